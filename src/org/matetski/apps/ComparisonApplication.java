@@ -0,0 +1,88 @@
+package org.matetski.apps;
+
+import javafx.application.Application;
+import javafx.fxml.FXMLLoader;
+import javafx.geometry.Rectangle2D;
+import javafx.scene.Scene;
+import javafx.stage.Screen;
+import javafx.stage.Stage;
+import org.matetski.gui.ComparisonController;
+import org.matetski.gui.Controller;
+import org.matetski.utils.Model;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * An application showing several instances of a model side by side in one window. The instances share
+ * the control panel of the model, and each one overrides some of the parameters, e.g. the jump rate.
+ *
+ * @author K.Matetski
+ */
+public abstract class ComparisonApplication extends Application {
+
+    private ComparisonController controller;
+
+    /**
+     * Returns the compared instances of the model, the same list for all calls.
+     */
+    protected abstract List<Model> getModels();
+
+    /**
+     * Returns the parameters of each instance which differ from the ones on the control panel.
+     */
+    protected abstract List<HashMap<String, Object>> getOverrides();
+
+    /**
+     * Returns the descriptions of the instances, shown above their canvases.
+     */
+    protected abstract List<String> getDescriptions();
+
+    private void init(Stage primaryStage) throws Exception {
+        Model model = getModels().get(0);
+        primaryStage.setTitle(model.getModelName());
+        FXMLLoader loader = new FXMLLoader(getClass().getResource(model.getGUIFileName()));
+        controller = new ComparisonController(getModels(), getOverrides(), getDescriptions(),
+                Runtime.getRuntime().availableProcessors());
+        loader.setController(controller);
+        Rectangle2D visualBounds = Screen.getPrimary().getVisualBounds();
+        primaryStage.setScene(new Scene(loader.load(), visualBounds.getWidth(), visualBounds.getHeight()));
+        primaryStage.show();
+
+        controller.createCanvases();
+        loadSubcontrollers(model, controller);
+
+        HashMap<String, Object> parameters = model.getDefaultParameters();
+        controller.setModelParameters(parameters);
+        controller.setParameters(parameters);
+        controller.paintModels();
+    }
+
+    private void loadSubcontrollers(Model model, ComparisonController controller) throws IOException {
+        FXMLLoader controlLoader = new FXMLLoader(getClass().getResource(model.getControlGUIFileName()));
+        controller.getControlPanel().getChildren().add(controlLoader.load());
+        Controller subController = controlLoader.getController();
+        subController.setParentController(controller);
+        controller.addSubcontroller(subController);
+    }
+
+    /**
+     * The main application method.
+     */
+    @Override
+    public void start(Stage primaryStage) throws Exception {
+        for (Model model : getModels()) {
+            model.initialize();
+        }
+        init(primaryStage);
+    }
+
+    @Override
+    public void stop() throws Exception {
+        if (controller != null) {
+            controller.close();
+        }
+        super.stop();
+    }
+}
@@ -0,0 +1,306 @@
+package org.matetski.gui;
+
+import javafx.application.Platform;
+import javafx.fxml.FXML;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.Slider;
+import javafx.scene.layout.Pane;
+import org.matetski.utils.Model;
+import org.matetski.utils.ModelUtils;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.ActionListener;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.ResourceBundle;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The controller of a window showing several models side by side, e.g. with different jump rates.
+ * The control panel sets the common parameters, and each model overrides some of them.
+ * <p>
+ * The models are advanced in rounds on a pool with a bounded number of threads: in each round every model makes
+ * one iteration, so no model gets ahead of the others, and the next round starts after all models are drawn
+ * in one pass on the application thread. A tick of the timer is skipped if the previous round is not finished.
+ * Changes of the parameters wait in a queue until the end of the current round, so that they do not race with it.
+ *
+ * @author K.Matetski
+ */
+@SuppressWarnings("unused")
+public class ComparisonController extends Controller {
+
+    private final List<Model> models;
+
+    /**
+     * The parameters overridden by each model, and their descriptions shown above the canvases.
+     */
+    private final List<HashMap<String, Object>> overrides;
+
+    private final List<String> descriptions;
+
+    private final Canvas[] canvases;
+
+    private final ExecutorService workers;
+
+    private final Runnable[] iterations;
+
+    /**
+     * The number of models which have not finished the current round.
+     */
+    private final AtomicInteger remaining = new AtomicInteger();
+
+    /**
+     * Is true from the beginning of a round until the models are drawn.
+     */
+    private final AtomicBoolean roundInProgress = new AtomicBoolean();
+
+    /**
+     * The actions waiting for the end of the current round, accessed only on the application thread.
+     */
+    private final ArrayDeque<Runnable> pendingActions = new ArrayDeque<>();
+
+    private final Runnable paintAll;
+
+    private final Timer timer;
+
+    /**
+     * Creates the controller of the given models.
+     *
+     * @param models        the models.
+     * @param overrides     the parameters of each model which differ from the ones of the control panel.
+     * @param descriptions  the descriptions of the models.
+     * @param threadsNumber the largest number of threads advancing the models.
+     */
+    public ComparisonController(List<Model> models, List<HashMap<String, Object>> overrides,
+                                List<String> descriptions, int threadsNumber) {
+        this.models = models;
+        this.overrides = overrides;
+        this.descriptions = descriptions;
+        canvases = new Canvas[models.size()];
+        workers = Executors.newFixedThreadPool(Math.max(1, Math.min(threadsNumber, models.size())), runnable -> {
+            Thread thread = new Thread(runnable, "Comparison");
+            thread.setDaemon(true);
+            return thread;
+        });
+        paintAll = () -> {
+            try {
+                paintModels();
+                runPendingActions();
+            } finally {
+                roundInProgress.set(false);
+            }
+        };
+        iterations = new Runnable[models.size()];
+        for (int k = 0; k < iterations.length; k++) {
+            Model model = models.get(k);
+            iterations[k] = () -> {
+                try {
+                    model.iterate();
+                } finally {
+                    if (remaining.decrementAndGet() == 0) {
+                        Platform.runLater(paintAll);
+                    }
+                }
+            };
+        }
+        timer = new Timer(0, new TimerListener());
+    }
+
+    /**
+     * Creates the canvases of the models side by side.
+     */
+    public void createCanvases() {
+        double width = getDrawingPane().getWidth() / models.size();
+        for (int k = 0; k < canvases.length; k++) {
+            canvases[k] = new Canvas(width, getDrawingPane().getHeight());
+            canvases[k].setLayoutX(k * width);
+            Label label = new Label(descriptions.get(k));
+            label.setLayoutX(k * width + 5);
+            label.setLayoutY(5);
+            getDrawingPane().getChildren().addAll(canvases[k], label);
+        }
+    }
+
+    /**
+     * Sets the parameters of all models, each one with its overrides and the size of its canvas.
+     *
+     * @param parameters the common parameters.
+     */
+    public void setModelParameters(HashMap<String, Object> parameters) {
+        for (int k = 0; k < models.size(); k++) {
+            HashMap<String, Object> modelParameters = new HashMap<>(parameters);
+            modelParameters.putAll(overrides.get(k));
+            modelParameters.put(ModelUtils.SIZE_PARAMETER, new Dimension((int) canvases[k].getWidth(),
+                    (int) canvases[k].getHeight()));
+            models.get(k).setParameters(modelParameters);
+        }
+    }
+
+    /**
+     * Draws all models, restarting the ones which can be stopped.
+     */
+    public void paintModels() {
+        for (int k = 0; k < models.size(); k++) {
+            Model model = models.get(k);
+            if (model.canStop()) {
+                HashMap<String, Object> parameters = getParameters();
+                parameters.putAll(overrides.get(k));
+                parameters.put(ModelUtils.SIZE_PARAMETER, new Dimension((int) canvases[k].getWidth(),
+                        (int) canvases[k].getHeight()));
+                model.setParameters(parameters);
+            }
+            model.paint(canvases[k].getGraphicsContext2D());
+        }
+    }
+
+    /**
+     * Stops the timer and the threads.
+     */
+    public void close() {
+        timer.stop();
+        workers.shutdown();
+    }
+
+    @Override
+    protected HashMap<String, Object> createParameters() {
+        return new HashMap<>();
+    }
+
+    @Override
+    public void setMyParameters(HashMap<String, Object> parameters) {
+    }
+
+    @Override
+    protected void makeInactive() {
+
+    }
+
+    @Override
+    protected void makeActive() {
+
+    }
+
+    @Override
+    public void stateChanged(HashMap<String, Object> parameters, boolean repaint) {
+        betweenRounds(() -> {
+            setModelParameters(parameters);
+            if (repaint) {
+                paintModels();
+            }
+        });
+    }
+
+    /**
+     * Runs the action on the application thread when no round is in progress, no round starts during the action.
+     * If a round is in progress, the action is run at its end, before the next round can start.
+     */
+    private void betweenRounds(Runnable action) {
+        Platform.runLater(() -> {
+            pendingActions.add(action);
+            // Otherwise a round is in progress, and it runs the action when it ends on this thread.
+            if (roundInProgress.compareAndSet(false, true)) {
+                try {
+                    runPendingActions();
+                } finally {
+                    roundInProgress.set(false);
+                }
+            }
+        });
+    }
+
+    private void runPendingActions() {
+        Runnable action;
+        while ((action = pendingActions.poll()) != null) {
+            action.run();
+        }
+    }
+
+    @FXML
+    private Button runPauseButton;
+
+    @FXML
+    private Button resetButton;
+
+    @FXML
+    private Slider delaySlider;
+
+    @FXML
+    private Pane drawingPane;
+
+    @FXML
+    private Pane controlPanel;
+
+    private void runPauseButtonAction() {
+        if (runPauseButton.getText().equals(RunPauseButtonState.RUN.toString())) {
+            makeSubcontrollersInactive();
+            timer.setDelay(getDelay());
+            timer.start();
+            runPauseButton.setText(RunPauseButtonState.PAUSE.toString());
+        } else {
+            stopSimulation();
+        }
+    }
+
+    /**
+     * Stops execution of the algorithms, the current round is finished.
+     */
+    private void stopSimulation() {
+        timer.stop();
+        runPauseButton.setText(RunPauseButtonState.RUN.toString());
+    }
+
+    private void resetButtonAction() {
+        stopSimulation();
+        betweenRounds(() -> {
+            setModelParameters(getParameters());
+            paintModels();
+            makeSubcontrollersActive();
+        });
+    }
+
+    @FXML
+    private void delayChangedAction() {
+        timer.setDelay(getDelay());
+    }
+
+    public Pane getControlPanel() {
+        return controlPanel;
+    }
+
+    private Pane getDrawingPane() {
+        return drawingPane;
+    }
+
+    private int getDelay() {
+        return (int) delaySlider.getValue();
+    }
+
+    private class TimerListener implements ActionListener {
+
+        @Override
+        public void actionPerformed(java.awt.event.ActionEvent e) {
+            if (!roundInProgress.compareAndSet(false, true)) {
+                return;
+            }
+            remaining.set(iterations.length);
+            for (Runnable iteration : iterations) {
+                workers.execute(iteration);
+            }
+        }
+    }
+
+    @Override
+    public void initialize(URL location, ResourceBundle resources) {
+        runPauseButton.setOnAction((value) -> runPauseButtonAction());
+        resetButton.setOnAction((value) -> resetButtonAction());
+        delaySlider.valueProperty().addListener((listener) -> delayChangedAction());
+    }
+}
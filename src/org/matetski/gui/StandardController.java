@@ -133,8 +133,17 @@ public class StandardController extends Controller {
     private class TimerListener implements ActionListener {
         private final Model model;
 
+        /**
+         * Makes an iteration and draws the result, created once so that a tick of the timer does not allocate.
+         */
+        private final Runnable iterateAndPaint;
+
         TimerListener(Model model) {
             this.model = model;
+            iterateAndPaint = () -> {
+                model.iterate();
+                model.paint(canvas.getGraphicsContext2D());
+            };
         }
 
         @Override
@@ -147,10 +156,7 @@ public class StandardController extends Controller {
                     model.paint(canvas.getGraphicsContext2D());
                 });
             } else {
-                Platform.runLater(() -> {
-                    model.iterate();
-                    model.paint(canvas.getGraphicsContext2D());
-                });
+                Platform.runLater(iterateAndPaint);
             }
         }
     }
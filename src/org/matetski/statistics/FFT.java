@@ -0,0 +1,88 @@
+package org.matetski.statistics;
+
+/**
+ * The fast Fourier transform of complex sequences whose length is a power of two, computed in place by the iterative
+ * radix-2 algorithm. The twiddle factors and the bit-reversal permutation are computed once for the length,
+ * and the transform does not allocate memory, so one instance can be reused for many sequences by one thread.
+ *
+ * @author K.Matetski
+ */
+public final class FFT {
+
+    private final int size;
+
+    private final double[] cosines, sines;
+
+    private final int[] reversed;
+
+    /**
+     * Prepares the transform of the given length.
+     *
+     * @param size the length of the sequences, a power of two.
+     */
+    public FFT(int size) {
+        if (Integer.bitCount(size) != 1) {
+            throw new IllegalArgumentException("The size should be a power of two: " + size);
+        }
+        this.size = size;
+        cosines = new double[size / 2];
+        sines = new double[size / 2];
+        for (int k = 0; k < size / 2; k++) {
+            cosines[k] = Math.cos(2 * Math.PI * k / size);
+            sines[k] = Math.sin(2 * Math.PI * k / size);
+        }
+        reversed = new int[size];
+        int bits = Integer.numberOfTrailingZeros(size);
+        for (int k = 0; k < size; k++) {
+            reversed[k] = bits == 0 ? 0 : Integer.reverse(k) >>> (32 - bits);
+        }
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Replaces the sequence by its transform {@code X(k) = sum_n x(n) exp(-2 pi i k n / size)}, or by the inverse
+     * transform {@code x(n) = sum_k X(k) exp(2 pi i k n / size) / size}.
+     *
+     * @param real      the real parts.
+     * @param imaginary the imaginary parts.
+     * @param inverse   {@code true} for the inverse transform.
+     */
+    public void transform(double[] real, double[] imaginary, boolean inverse) {
+        for (int k = 0; k < size; k++) {
+            int j = reversed[k];
+            if (j > k) {
+                double swap = real[k];
+                real[k] = real[j];
+                real[j] = swap;
+                swap = imaginary[k];
+                imaginary[k] = imaginary[j];
+                imaginary[j] = swap;
+            }
+        }
+        double sign = inverse ? 1 : -1;
+        for (int length = 2; length <= size; length <<= 1) {
+            int half = length >> 1, step = size / length;
+            for (int start = 0; start < size; start += length) {
+                for (int k = 0; k < half; k++) {
+                    double cos = cosines[k * step], sin = sign * sines[k * step];
+                    int even = start + k, odd = even + half;
+                    double oddReal = real[odd] * cos - imaginary[odd] * sin,
+                            oddImaginary = real[odd] * sin + imaginary[odd] * cos;
+                    real[odd] = real[even] - oddReal;
+                    imaginary[odd] = imaginary[even] - oddImaginary;
+                    real[even] += oddReal;
+                    imaginary[even] += oddImaginary;
+                }
+            }
+        }
+        if (inverse) {
+            for (int k = 0; k < size; k++) {
+                real[k] /= size;
+                imaginary[k] /= size;
+            }
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package org.matetski.statistics;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Counts of observations in bins of equal width. The counts are integers, so histograms with the same bins
+ * are merged exactly, in any order.
+ *
+ * @author K.Matetski
+ */
+public final class Histogram {
+
+    private final double min, max;
+
+    private final long[] counts;
+
+    /**
+     * The numbers of observations below the minimum and not below the maximum.
+     */
+    private long underflow, overflow;
+
+    /**
+     * Creates an empty histogram.
+     *
+     * @param min        the left end of the first bin.
+     * @param max        the right end of the last bin.
+     * @param binsNumber the number of bins.
+     */
+    public Histogram(double min, double max, int binsNumber) {
+        if (!(min < max) || binsNumber <= 0) {
+            throw new IllegalArgumentException("Wrong bins: [" + min + ", " + max + "), " + binsNumber);
+        }
+        this.min = min;
+        this.max = max;
+        counts = new long[binsNumber];
+    }
+
+    /**
+     * Adds an observation.
+     *
+     * @param value the observed value.
+     */
+    public void add(double value) {
+        if (value < min) {
+            underflow++;
+        } else if (value >= max) {
+            overflow++;
+        } else {
+            counts[Math.min(counts.length - 1, (int) ((value - min) / (max - min) * counts.length))]++;
+        }
+    }
+
+    /**
+     * Adds the counts of another histogram with the same bins.
+     *
+     * @param other the histogram to merge into this one.
+     */
+    public void merge(Histogram other) {
+        if (other.min != min || other.max != max || other.counts.length != counts.length) {
+            throw new IllegalArgumentException("The histograms have different bins");
+        }
+        for (int k = 0; k < counts.length; k++) {
+            counts[k] += other.counts[k];
+        }
+        underflow += other.underflow;
+        overflow += other.overflow;
+    }
+
+    /**
+     * Forgets all observations.
+     */
+    public void clear() {
+        Arrays.fill(counts, 0);
+        underflow = 0;
+        overflow = 0;
+    }
+
+    public int getBinsNumber() {
+        return counts.length;
+    }
+
+    /**
+     * Returns the left end of the bin with the given number.
+     */
+    public double getBinStart(int bin) {
+        return min + (max - min) * bin / counts.length;
+    }
+
+    public long getCount(int bin) {
+        return counts[bin];
+    }
+
+    public long getUnderflow() {
+        return underflow;
+    }
+
+    public long getOverflow() {
+        return overflow;
+    }
+
+    /**
+     * Returns the number of all observations, including those outside of the bins.
+     */
+    public long getTotalCount() {
+        long total = underflow + overflow;
+        for (long count : counts) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * Writes the histogram, so that it can be merged in another process.
+     */
+    public void write(DataOutput output) throws IOException {
+        output.writeDouble(min);
+        output.writeDouble(max);
+        output.writeInt(counts.length);
+        for (long count : counts) {
+            output.writeLong(count);
+        }
+        output.writeLong(underflow);
+        output.writeLong(overflow);
+    }
+
+    /**
+     * Reads a histogram written by {@link #write(DataOutput)}.
+     */
+    public static Histogram read(DataInput input) throws IOException {
+        Histogram histogram = new Histogram(input.readDouble(), input.readDouble(), input.readInt());
+        for (int k = 0; k < histogram.counts.length; k++) {
+            histogram.counts[k] = input.readLong();
+        }
+        histogram.underflow = input.readLong();
+        histogram.overflow = input.readLong();
+        return histogram;
+    }
+}
@@ -0,0 +1,133 @@
+package org.matetski.statistics;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Running estimates of the first four moments of a sequence of observations, computed in a single pass
+ * with O(1) memory. Two estimators can be merged, e.g. after computing them in different threads or processes.
+ *
+ * @author K.Matetski
+ */
+public final class OnlineMoments {
+
+    /**
+     * The number of observations.
+     */
+    private long count;
+
+    private double mean;
+
+    /**
+     * The sums of the second, third and fourth powers of deviations from the mean.
+     */
+    private double m2, m3, m4;
+
+    /**
+     * Adds an observation.
+     *
+     * @param value the observed value.
+     */
+    public void add(double value) {
+        long previousCount = count++;
+        double delta = value - mean,
+                deltaN = delta / count,
+                deltaN2 = deltaN * deltaN,
+                term = delta * deltaN * previousCount;
+        mean += deltaN;
+        m4 += term * deltaN2 * ((double) count * count - 3 * count + 3) + 6 * deltaN2 * m2 - 4 * deltaN * m3;
+        m3 += term * deltaN * (count - 2) - 3 * deltaN * m2;
+        m2 += term;
+    }
+
+    /**
+     * Adds all observations of the other estimator, as if they were added to this one.
+     *
+     * @param other the estimator to merge into this one.
+     */
+    public void merge(OnlineMoments other) {
+        if (other.count == 0) {
+            return;
+        }
+        if (count == 0) {
+            set(other.count, other.mean, other.m2, other.m3, other.m4);
+            return;
+        }
+        double na = count, nb = other.count, n = na + nb,
+                delta = other.mean - mean,
+                delta2 = delta * delta;
+        double newM2 = m2 + other.m2 + delta2 * na * nb / n;
+        double newM3 = m3 + other.m3 + delta2 * delta * na * nb * (na - nb) / (n * n)
+                + 3 * delta * (na * other.m2 - nb * m2) / n;
+        double newM4 = m4 + other.m4 + delta2 * delta2 * na * nb * (na * na - na * nb + nb * nb) / (n * n * n)
+                + 6 * delta2 * (na * na * other.m2 + nb * nb * m2) / (n * n)
+                + 4 * delta * (na * other.m3 - nb * m3) / n;
+        set(count + other.count, mean + delta * nb / n, newM2, newM3, newM4);
+    }
+
+    /**
+     * Forgets all observations.
+     */
+    public void clear() {
+        set(0, 0, 0, 0, 0);
+    }
+
+    /**
+     * Writes the state of the estimator, so that it can be merged in another process.
+     */
+    public void write(DataOutput output) throws IOException {
+        output.writeLong(count);
+        output.writeDouble(mean);
+        output.writeDouble(m2);
+        output.writeDouble(m3);
+        output.writeDouble(m4);
+    }
+
+    /**
+     * Reads an estimator written by {@link #write(DataOutput)}.
+     */
+    public static OnlineMoments read(DataInput input) throws IOException {
+        OnlineMoments moments = new OnlineMoments();
+        moments.set(input.readLong(), input.readDouble(), input.readDouble(), input.readDouble(), input.readDouble());
+        return moments;
+    }
+
+    private void set(long count, double mean, double m2, double m3, double m4) {
+        this.count = count;
+        this.mean = mean;
+        this.m2 = m2;
+        this.m3 = m3;
+        this.m4 = m4;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMean() {
+        return count > 0 ? mean : Double.NaN;
+    }
+
+    /**
+     * Returns the unbiased estimate of the variance.
+     *
+     * @return the variance, or {@code NaN} if there are less than two observations.
+     */
+    public double getVariance() {
+        return count > 1 ? m2 / (count - 1) : Double.NaN;
+    }
+
+    public double getSkewness() {
+        return count > 2 && m2 > 0 ? Math.sqrt(count) * m3 / Math.pow(m2, 1.5) : Double.NaN;
+    }
+
+    /**
+     * Returns the excess kurtosis, which vanishes for the Gaussian distribution.
+     *
+     * @return the excess kurtosis, or {@code NaN} if it is not defined.
+     */
+    public double getKurtosis() {
+        return count > 3 && m2 > 0 ? count * m4 / (m2 * m2) - 3 : Double.NaN;
+    }
+}
@@ -0,0 +1,279 @@
+package org.matetski.statistics;
+
+import java.util.Arrays;
+
+/**
+ * A merging t-digest, which approximates the distribution of a sequence of observations by a bounded number
+ * of weighted centroids. The centroids are small near the tails, so that extreme quantiles are estimated
+ * precisely. The memory does not depend on the number of observations.
+ *
+ * @author K.Matetski
+ */
+public final class QuantileSketch {
+
+    /**
+     * The default compression, roughly the number of centroids which are kept.
+     */
+    public static final double DEFAULT_COMPRESSION = 100;
+
+    private final double compression;
+
+    /**
+     * Centroids sorted by their means.
+     */
+    private double[] means, weights;
+
+    private int centroidsNumber;
+
+    /**
+     * Observations which are not merged into the centroids yet.
+     */
+    private final double[] bufferMeans, bufferWeights;
+
+    private int bufferSize;
+
+    /**
+     * Temporary arrays for merging, swapped with the centroids after each compression.
+     */
+    private double[] mergedMeans, mergedWeights;
+
+    private double totalWeight;
+
+    private double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+
+    public QuantileSketch() {
+        this(DEFAULT_COMPRESSION);
+    }
+
+    public QuantileSketch(double compression) {
+        this.compression = compression;
+        int capacity = 2 * (int) Math.ceil(compression) + 10;
+        means = new double[capacity];
+        weights = new double[capacity];
+        mergedMeans = new double[capacity];
+        mergedWeights = new double[capacity];
+        bufferMeans = new double[5 * capacity];
+        bufferWeights = new double[5 * capacity];
+    }
+
+    /**
+     * Adds an observation.
+     *
+     * @param value the observed value.
+     */
+    public void add(double value) {
+        add(value, 1);
+    }
+
+    private void add(double value, double weight) {
+        if (bufferSize == bufferMeans.length) {
+            compress();
+        }
+        bufferMeans[bufferSize] = value;
+        bufferWeights[bufferSize] = weight;
+        bufferSize++;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Adds all observations summarized by the other sketch.
+     *
+     * @param other the sketch to merge into this one.
+     */
+    public void merge(QuantileSketch other) {
+        other.compress();
+        for (int k = 0; k < other.centroidsNumber; k++) {
+            add(other.means[k], other.weights[k]);
+        }
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * Forgets all observations.
+     */
+    public void clear() {
+        centroidsNumber = 0;
+        bufferSize = 0;
+        totalWeight = 0;
+        min = Double.POSITIVE_INFINITY;
+        max = Double.NEGATIVE_INFINITY;
+    }
+
+    /**
+     * Merges the buffered observations into the centroids.
+     */
+    private void compress() {
+        if (bufferSize == 0) {
+            return;
+        }
+        sort(bufferMeans, bufferWeights, 0, bufferSize - 1);
+        for (int k = 0; k < bufferSize; k++) {
+            totalWeight += bufferWeights[k];
+        }
+
+        int merged = 0, centroid = 0, buffered = 0;
+        double weightSoFar = 0, limit = weightLimit(0);
+        while (centroid < centroidsNumber || buffered < bufferSize) {
+            double mean, weight;
+            if (buffered == bufferSize
+                    || (centroid < centroidsNumber && means[centroid] <= bufferMeans[buffered])) {
+                mean = means[centroid];
+                weight = weights[centroid++];
+            } else {
+                mean = bufferMeans[buffered];
+                weight = bufferWeights[buffered++];
+            }
+            if (merged > 0 && weightSoFar + mergedWeights[merged - 1] + weight <= limit) {
+                double newWeight = mergedWeights[merged - 1] + weight;
+                mergedMeans[merged - 1] += (mean - mergedMeans[merged - 1]) * weight / newWeight;
+                mergedWeights[merged - 1] = newWeight;
+            } else {
+                if (merged > 0) {
+                    weightSoFar += mergedWeights[merged - 1];
+                    limit = weightLimit(weightSoFar);
+                }
+                if (merged == mergedMeans.length) {
+                    mergedMeans = Arrays.copyOf(mergedMeans, 2 * merged);
+                    mergedWeights = Arrays.copyOf(mergedWeights, 2 * merged);
+                }
+                mergedMeans[merged] = mean;
+                mergedWeights[merged] = weight;
+                merged++;
+            }
+        }
+
+        double[] swap = means;
+        means = mergedMeans;
+        mergedMeans = swap;
+        swap = weights;
+        weights = mergedWeights;
+        mergedWeights = swap;
+        if (mergedMeans.length < means.length) {
+            mergedMeans = new double[means.length];
+            mergedWeights = new double[means.length];
+        }
+        centroidsNumber = merged;
+        bufferSize = 0;
+    }
+
+    /**
+     * Returns the largest cumulative weight up to which a centroid starting at the given weight can grow.
+     * This is the scale function {@code k(q) = compression / (2 pi) asin(2q - 1)} increased by one.
+     */
+    private double weightLimit(double weightSoFar) {
+        double k = compression / (2 * Math.PI) * Math.asin(Math.min(1, 2 * weightSoFar / totalWeight - 1)) + 1;
+        if (k >= compression / 4) {
+            return totalWeight;
+        }
+        return totalWeight * (Math.sin(2 * Math.PI * k / compression) + 1) / 2;
+    }
+
+    /**
+     * Returns the estimate of the quantile.
+     *
+     * @param q the probability, between 0 and 1.
+     * @return the estimated quantile, or {@code NaN} if there are no observations.
+     */
+    public double quantile(double q) {
+        compress();
+        if (centroidsNumber == 0) {
+            return Double.NaN;
+        }
+        if (centroidsNumber == 1) {
+            return means[0];
+        }
+        double target = q * totalWeight;
+        if (target < weights[0] / 2) {
+            return min + (means[0] - min) * target / (weights[0] / 2);
+        }
+        double weightSoFar = weights[0] / 2;
+        for (int k = 0; k < centroidsNumber - 1; k++) {
+            double step = (weights[k] + weights[k + 1]) / 2;
+            if (target < weightSoFar + step) {
+                return means[k] + (means[k + 1] - means[k]) * (target - weightSoFar) / step;
+            }
+            weightSoFar += step;
+        }
+        double lastHalf = weights[centroidsNumber - 1] / 2;
+        return means[centroidsNumber - 1]
+                + (max - means[centroidsNumber - 1]) * Math.min(1, (target - weightSoFar) / lastHalf);
+    }
+
+    /**
+     * Returns the estimate of the cumulative distribution function.
+     *
+     * @param value the point where the distribution function is evaluated.
+     * @return the fraction of observations not exceeding the value.
+     */
+    public double cdf(double value) {
+        compress();
+        if (centroidsNumber == 0) {
+            return Double.NaN;
+        }
+        if (value < min) {
+            return 0;
+        }
+        if (value >= max) {
+            return 1;
+        }
+        double weightSoFar = 0;
+        for (int k = 0; k < centroidsNumber; k++) {
+            if (value < means[k]) {
+                double left = k == 0 ? min : means[k - 1],
+                        leftWeight = k == 0 ? 0 : weights[k - 1] / 2;
+                return (weightSoFar - leftWeight
+                        + (leftWeight + weights[k] / 2) * (value - left) / (means[k] - left)) / totalWeight;
+            }
+            weightSoFar += weights[k];
+        }
+        return 1 - (weights[centroidsNumber - 1] / 2) * (max - value)
+                / (max - means[centroidsNumber - 1]) / totalWeight;
+    }
+
+    /**
+     * Returns the number of observations.
+     *
+     * @return the number of observations.
+     */
+    public double getCount() {
+        compress();
+        return totalWeight;
+    }
+
+    /**
+     * Sorts the values together with their weights, without allocating memory.
+     */
+    private static void sort(double[] values, double[] weights, int from, int to) {
+        while (from < to) {
+            double pivot = values[(from + to) >>> 1];
+            int left = from, right = to;
+            while (left <= right) {
+                while (values[left] < pivot) {
+                    left++;
+                }
+                while (values[right] > pivot) {
+                    right--;
+                }
+                if (left <= right) {
+                    double swap = values[left];
+                    values[left] = values[right];
+                    values[right] = swap;
+                    swap = weights[left];
+                    weights[left] = weights[right];
+                    weights[right] = swap;
+                    left++;
+                    right--;
+                }
+            }
+            if (right - from < to - left) {
+                sort(values, weights, from, right);
+                from = left;
+            } else {
+                sort(values, weights, left, to);
+                to = right;
+            }
+        }
+    }
+}
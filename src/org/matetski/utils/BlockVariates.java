@@ -0,0 +1,346 @@
+package org.matetski.utils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Generates random variates for the simulation loops in blocks. The exponential variables, the bounded integers
+ * and the uniform variables are produced into primitive buffers by tight loops, and the loops of the models read them one by one.
+ * The exponential variables are generated by the ziggurat method of Marsaglia and Tsang, which needs a logarithm
+ * only in about one case of a hundred. The bounded integers are obtained by the multiply-shift method of Lemire,
+ * which needs no division except in the rare rejected cases. The underlying generator is xoshiro256**.
+ *
+ * @author K.Matetski
+ */
+public final class BlockVariates {
+
+    /**
+     * The number of layers of the ziggurat.
+     */
+    private static final int LAYERS = 256;
+
+    /**
+     * The right end of the base layer of the ziggurat.
+     */
+    private static final double ZIGGURAT_R = 7.697117470131487;
+
+    /**
+     * The area of each layer of the ziggurat.
+     */
+    private static final double ZIGGURAT_V = 3.949659822581572e-3;
+
+    private static final double TWO_POW_32 = 4294967296.0;
+
+    /**
+     * The smallest mean of the Poisson variables generated by the rejection method.
+     */
+    private static final double POISSON_REJECTION_MEAN = 10;
+
+    /**
+     * The logarithms of the factorials of small numbers.
+     */
+    private static final double[] LOG_FACTORIALS = new double[16];
+
+    /**
+     * The tables of the ziggurat: the acceptance thresholds of 32-bit integers, the scales of the integers
+     * and the values of the density at the layer boundaries.
+     */
+    private static final long[] K = new long[LAYERS];
+
+    private static final double[] W = new double[LAYERS], F = new double[LAYERS];
+
+    static {
+        for (int k = 1; k < LOG_FACTORIALS.length; k++) {
+            LOG_FACTORIALS[k] = LOG_FACTORIALS[k - 1] + Math.log(k);
+        }
+        double d = ZIGGURAT_R, t = d;
+        double q = ZIGGURAT_V / Math.exp(-d);
+        K[0] = (long) (d / q * TWO_POW_32);
+        K[1] = 0;
+        W[0] = q / TWO_POW_32;
+        W[LAYERS - 1] = d / TWO_POW_32;
+        F[0] = 1;
+        F[LAYERS - 1] = Math.exp(-d);
+        for (int i = LAYERS - 2; i >= 1; i--) {
+            d = -Math.log(ZIGGURAT_V / d + Math.exp(-d));
+            K[i + 1] = (long) (d / t * TWO_POW_32);
+            t = d;
+            F[i] = Math.exp(-d);
+            W[i] = d / TWO_POW_32;
+        }
+    }
+
+    /**
+     * The state of the xoshiro256** generator.
+     */
+    private long s0, s1, s2, s3;
+
+    private final double[] exponentials;
+
+    private final long[] integers;
+
+    private final double[] uniforms;
+
+    /**
+     * The positions of the next unused variates in the buffers.
+     */
+    private int nextExponential, nextInteger, nextUniform;
+
+    /**
+     * The bound of the integers and the smallest accepted low part of the product, equal to {@code 2^64 mod bound}.
+     */
+    private long bound = 1, threshold = 0;
+
+    /**
+     * Creates the generator with buffers of the given size.
+     *
+     * @param seed      the seed, the same seed gives the same sequences.
+     * @param blockSize the number of variates generated at once.
+     */
+    public BlockVariates(long seed, int blockSize) {
+        // The state is filled by SplitMix64, as recommended for xoshiro generators.
+        s0 = splitMix(seed += 0x9E3779B97F4A7C15L);
+        s1 = splitMix(seed += 0x9E3779B97F4A7C15L);
+        s2 = splitMix(seed += 0x9E3779B97F4A7C15L);
+        s3 = splitMix(seed + 0x9E3779B97F4A7C15L);
+        exponentials = new double[blockSize];
+        integers = new long[blockSize];
+        uniforms = new double[blockSize];
+        nextExponential = blockSize;
+        nextInteger = blockSize;
+        nextUniform = blockSize;
+    }
+
+    /**
+     * Sets the bound of the integers returned by {@link #nextInteger()}.
+     *
+     * @param bound a positive bound.
+     */
+    public void setBound(long bound) {
+        if (bound <= 0) {
+            throw new IllegalArgumentException("The bound should be positive: " + bound);
+        }
+        if (bound != this.bound) {
+            this.bound = bound;
+            threshold = Long.remainderUnsigned(-bound, bound);
+            nextInteger = integers.length;
+        }
+    }
+
+    /**
+     * Returns an exponential random variable with mean 1.
+     */
+    public double nextExponential() {
+        if (nextExponential == exponentials.length) {
+            fillExponentials();
+        }
+        return exponentials[nextExponential++];
+    }
+
+    /**
+     * Returns a uniform random integer from {@code 0} to the bound given by {@link #setBound(long)}, exclusive.
+     */
+    public long nextInteger() {
+        if (nextInteger == integers.length) {
+            fillIntegers();
+        }
+        return integers[nextInteger++];
+    }
+
+    /**
+     * Returns a uniform random variable in {@code (0, 1]}.
+     */
+    public double nextUniform() {
+        if (nextUniform == uniforms.length) {
+            for (int k = 0; k < uniforms.length; k++) {
+                uniforms[k] = nextDouble();
+            }
+            nextUniform = 0;
+        }
+        return uniforms[nextUniform++];
+    }
+
+    /**
+     * Returns a Poisson random variable with the given mean. Small means are handled by multiplying uniform
+     * variables, and large ones by the transformed rejection method PTRS of Hormann, whose cost does not depend
+     * on the mean.
+     *
+     * @param mean a non-negative mean.
+     */
+    public long nextPoisson(double mean) {
+        if (mean < POISSON_REJECTION_MEAN) {
+            double limit = Math.exp(-mean), product = nextUniform();
+            long count = 0;
+            while (product > limit) {
+                product *= nextUniform();
+                count++;
+            }
+            return count;
+        }
+        double root = Math.sqrt(mean), logMean = Math.log(mean);
+        double b = 0.931 + 2.53 * root, a = -0.059 + 0.02483 * b;
+        double logInverseAlpha = Math.log(1.1239 + 1.1328 / (b - 3.4)), squeeze = 0.9277 - 3.6224 / (b - 2);
+        while (true) {
+            double u = nextUniform() - 0.5, v = nextUniform();
+            double distance = 0.5 - Math.abs(u);
+            long count = (long) Math.floor((2 * a / distance + b) * u + mean + 0.43);
+            if (distance >= 0.07 && v <= squeeze) {
+                return count;
+            }
+            if (count < 0 || (distance < 0.013 && v > distance)) {
+                continue;
+            }
+            if (Math.log(v) + logInverseAlpha - Math.log(a / (distance * distance) + b)
+                    <= -mean + count * logMean - logFactorial(count)) {
+                return count;
+            }
+        }
+    }
+
+    /**
+     * Returns {@code log(k!)}, by the Stirling series for big {@code k}.
+     */
+    private static double logFactorial(long k) {
+        if (k < LOG_FACTORIALS.length) {
+            return LOG_FACTORIALS[(int) k];
+        }
+        double x = k + 1, inverse = 1 / x, inverse2 = inverse * inverse;
+        return (x - 0.5) * Math.log(x) - x + 0.5 * Math.log(2 * Math.PI)
+                + inverse * (1.0 / 12 - inverse2 * (1.0 / 360 - inverse2 / 1260));
+    }
+
+    /**
+     * Writes the state of the generator together with the unused variates, so that a generator read
+     * by {@link #read(DataInput)} continues the same sequences.
+     */
+    public void write(DataOutput output) throws IOException {
+        output.writeInt(exponentials.length);
+        output.writeLong(s0);
+        output.writeLong(s1);
+        output.writeLong(s2);
+        output.writeLong(s3);
+        output.writeLong(bound);
+        output.writeInt(nextExponential);
+        for (int k = nextExponential; k < exponentials.length; k++) {
+            output.writeDouble(exponentials[k]);
+        }
+        output.writeInt(nextInteger);
+        for (int k = nextInteger; k < integers.length; k++) {
+            output.writeLong(integers[k]);
+        }
+        output.writeInt(nextUniform);
+        for (int k = nextUniform; k < uniforms.length; k++) {
+            output.writeDouble(uniforms[k]);
+        }
+    }
+
+    /**
+     * Reads a generator written by {@link #write(DataOutput)}.
+     */
+    public static BlockVariates read(DataInput input) throws IOException {
+        BlockVariates variates = new BlockVariates(0, input.readInt());
+        variates.s0 = input.readLong();
+        variates.s1 = input.readLong();
+        variates.s2 = input.readLong();
+        variates.s3 = input.readLong();
+        variates.setBound(input.readLong());
+        variates.nextExponential = input.readInt();
+        for (int k = variates.nextExponential; k < variates.exponentials.length; k++) {
+            variates.exponentials[k] = input.readDouble();
+        }
+        variates.nextInteger = input.readInt();
+        for (int k = variates.nextInteger; k < variates.integers.length; k++) {
+            variates.integers[k] = input.readLong();
+        }
+        variates.nextUniform = input.readInt();
+        for (int k = variates.nextUniform; k < variates.uniforms.length; k++) {
+            variates.uniforms[k] = input.readDouble();
+        }
+        return variates;
+    }
+
+    private void fillExponentials() {
+        for (int k = 0; k < exponentials.length; k++) {
+            long random = nextLong();
+            int layer = (int) random & (LAYERS - 1);
+            long value = random >>> 32;
+            // The fast path: the point is inside the rectangle contained in the layer.
+            exponentials[k] = value < K[layer] ? value * W[layer] : exponentialTail(layer, value);
+        }
+        nextExponential = 0;
+    }
+
+    /**
+     * Finishes the generation if the point is outside of the inner rectangle of the layer.
+     */
+    private double exponentialTail(int layer, long value) {
+        while (true) {
+            if (layer == 0) {
+                return ZIGGURAT_R - Math.log(nextDouble());
+            }
+            double x = value * W[layer];
+            if (F[layer] + nextDouble() * (F[layer - 1] - F[layer]) < Math.exp(-x)) {
+                return x;
+            }
+            long random = nextLong();
+            layer = (int) random & (LAYERS - 1);
+            value = random >>> 32;
+            if (value < K[layer]) {
+                return value * W[layer];
+            }
+        }
+    }
+
+    private void fillIntegers() {
+        for (int k = 0; k < integers.length; k++) {
+            long random = nextLong();
+            long low = random * bound;
+            if (Long.compareUnsigned(low, threshold) < 0) {
+                // Rejects the products which would make the distribution non-uniform.
+                while (Long.compareUnsigned(low, threshold) < 0) {
+                    random = nextLong();
+                    low = random * bound;
+                }
+            }
+            integers[k] = unsignedMultiplyHigh(random, bound);
+        }
+        nextInteger = 0;
+    }
+
+    /**
+     * Returns the upper 64 bits of the unsigned 128-bit product.
+     */
+    private static long unsignedMultiplyHigh(long x, long y) {
+        long x0 = x & 0xFFFFFFFFL, x1 = x >>> 32, y0 = y & 0xFFFFFFFFL, y1 = y >>> 32;
+        long low = x0 * y0;
+        long middle1 = x1 * y0 + (low >>> 32);
+        long middle2 = x0 * y1 + (middle1 & 0xFFFFFFFFL);
+        return x1 * y1 + (middle1 >>> 32) + (middle2 >>> 32);
+    }
+
+    /**
+     * Returns a uniform random variable in {@code (0, 1]}.
+     */
+    private double nextDouble() {
+        return ((nextLong() >>> 11) + 1) * 0x1.0p-53;
+    }
+
+    private long nextLong() {
+        long result = Long.rotateLeft(s1 * 5, 7) * 9;
+        long t = s1 << 17;
+        s2 ^= s0;
+        s3 ^= s1;
+        s1 ^= s2;
+        s0 ^= s3;
+        s2 ^= t;
+        s3 = Long.rotateLeft(s3, 45);
+        return result;
+    }
+
+    private static long splitMix(long value) {
+        value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+        return value ^ (value >>> 31);
+    }
+}
@@ -0,0 +1,21 @@
+package org.matetski.utils;
+
+/**
+ * Receives jumps of particles published by a model. The handler runs on its own thread and gets the events
+ * in the order they happened, in batches.
+ *
+ * @author K.Matetski
+ */
+public interface JumpEventHandler {
+
+    /**
+     * Is called for every jump.
+     *
+     * @param particle   the number of the jumping particle.
+     * @param from       the position before the jump.
+     * @param to         the position after the jump.
+     * @param time       the model time of the jump.
+     * @param endOfBatch {@code true} if this is the last event available at the moment.
+     */
+    void onJump(long particle, long from, long to, double time, boolean endOfBatch);
+}
@@ -0,0 +1,216 @@
+package org.matetski.utils;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A preallocated ring buffer through which a model publishes jump events to several handlers.
+ * There is a single producer, the simulation thread, and every handler reads the events in batches
+ * on its own thread. The events are stored in primitive arrays, so publishing does not allocate memory.
+ * The producer makes the events visible once per batch and waits only if the slowest handler
+ * is a whole ring behind.
+ *
+ * @author K.Matetski
+ */
+public final class JumpEventRing {
+
+    /**
+     * The time in nanoseconds a thread sleeps when it has nothing to do.
+     */
+    private static final long IDLE_NANOS = 50_000;
+
+    private final int mask;
+
+    private final long[] particles, froms, tos;
+
+    private final double[] times;
+
+    /**
+     * The number of events which can be written before they are made visible to the handlers.
+     */
+    private final int batchSize;
+
+    /**
+     * The sequence number of the last visible event.
+     */
+    private final AtomicLong cursor = new AtomicLong(-1);
+
+    /**
+     * The sequence number of the last written event, accessed only by the producer.
+     */
+    private long next = -1;
+
+    /**
+     * The smallest sequence number processed by all handlers, as seen by the producer the last time.
+     */
+    private long cachedGatingSequence = -1;
+
+    private volatile Consumer[] consumers = new Consumer[0];
+
+    /**
+     * Creates a ring of the given capacity.
+     *
+     * @param capacity the number of events in the ring, a power of two.
+     */
+    public JumpEventRing(int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("The capacity should be a power of two: " + capacity);
+        }
+        mask = capacity - 1;
+        particles = new long[capacity];
+        froms = new long[capacity];
+        tos = new long[capacity];
+        times = new double[capacity];
+        batchSize = Math.max(1, capacity / 8);
+    }
+
+    /**
+     * Starts a thread which passes the events published from now on to the given handler.
+     */
+    public synchronized void addHandler(JumpEventHandler handler) {
+        // The producer runs concurrently and gates only on the consumers it sees. The new consumer is made visible
+        // first, and its start is moved to the cursor afterwards, since before that the producer could still reuse
+        // the slots of the events up to the cursor it saw when it last checked the old consumers.
+        Consumer consumer = new Consumer(handler, cursor.get());
+        Consumer[] newConsumers = Arrays.copyOf(consumers, consumers.length + 1);
+        newConsumers[consumers.length] = consumer;
+        consumers = newConsumers;
+        consumer.sequence.set(cursor.get());
+        Thread thread = new Thread(consumer, "Jump event handler " + consumers.length);
+        thread.setDaemon(true);
+        consumer.thread = thread;
+        thread.start();
+    }
+
+    /**
+     * Stops the handler threads and waits until they processed the events made visible by {@link #flush()}
+     * before the call. Can be called from any thread, only the producer moves the cursor, so the events which
+     * the producer has not flushed yet are not passed to the handlers.
+     */
+    public synchronized void close() {
+        // The consumers keep holding back the producer until they stop, so their events are not overwritten.
+        Consumer[] closedConsumers = consumers;
+        long end = cursor.get();
+        for (Consumer consumer : closedConsumers) {
+            consumer.end = end;
+        }
+        boolean interrupted = false;
+        for (Consumer consumer : closedConsumers) {
+            while (consumer.thread != Thread.currentThread() && consumer.thread.isAlive()) {
+                try {
+                    consumer.thread.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        consumers = new Consumer[0];
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writes an event into the ring. The event becomes visible to the handlers after {@link #flush()},
+     * which is called automatically after each batch.
+     */
+    public void publish(long particle, long from, long to, double time) {
+        long sequence = next + 1;
+        if (sequence - mask - 1 > cachedGatingSequence) {
+            waitForConsumers(sequence - mask - 1);
+        }
+        int index = (int) sequence & mask;
+        particles[index] = particle;
+        froms[index] = from;
+        tos[index] = to;
+        times[index] = time;
+        next = sequence;
+        if (sequence - cursor.get() >= batchSize) {
+            flush();
+        }
+    }
+
+    /**
+     * Makes all written events visible to the handlers, should be called only by the producer.
+     */
+    public void flush() {
+        cursor.lazySet(next);
+    }
+
+    /**
+     * Waits until all handlers processed the event with the given sequence number, so that its slot can be reused.
+     */
+    private void waitForConsumers(long sequence) {
+        flush();
+        while ((cachedGatingSequence = getMinimumSequence()) < sequence) {
+            LockSupport.parkNanos(IDLE_NANOS);
+        }
+    }
+
+    private long getMinimumSequence() {
+        long minimum = next;
+        for (Consumer consumer : consumers) {
+            minimum = Math.min(minimum, consumer.sequence.get());
+        }
+        return minimum;
+    }
+
+    /**
+     * Reads the events for a handler on its own thread.
+     */
+    private final class Consumer implements Runnable {
+
+        private final JumpEventHandler handler;
+
+        /**
+         * The sequence number of the last processed event.
+         */
+        private final AtomicLong sequence;
+
+        /**
+         * The sequence number of the last event passed to the handler, set when the ring is closed.
+         */
+        private volatile long end = Long.MAX_VALUE;
+
+        private Thread thread;
+
+        Consumer(JumpEventHandler handler, long sequence) {
+            this.handler = handler;
+            this.sequence = new AtomicLong(sequence);
+        }
+
+        /**
+         * Passes the events to the handler until the end set by {@link #close()}. When the thread stops, the consumer
+         * stops holding back the producer. If the handler throws, the thread dies with the error reported
+         * by the uncaught exception handler.
+         */
+        @Override
+        public void run() {
+            long processed = sequence.get();
+            try {
+                while (true) {
+                    long last = end;
+                    long available = Math.min(cursor.get(), last);
+                    if (available > processed) {
+                        for (long current = processed + 1; current <= available; current++) {
+                            int index = (int) current & mask;
+                            handler.onJump(particles[index], froms[index], tos[index], times[index],
+                                    current == available);
+                        }
+                        processed = available;
+                        sequence.lazySet(processed);
+                    } else if (processed >= last) {
+                        // The ring is closed and the events published before closing are processed.
+                        return;
+                    } else {
+                        LockSupport.parkNanos(IDLE_NANOS);
+                    }
+                }
+            } finally {
+                // The producer should never wait for a stopped or dead consumer.
+                sequence.set(Long.MAX_VALUE);
+            }
+        }
+    }
+}
@@ -13,6 +13,12 @@ import static org.matetski.utils.ModelUtils.GUI_FILE_NAME;
  */
 public abstract class Model {
 
+    /**
+     * The ring through which jumps are published, created when the first handler is added.
+     * It is read by the simulation thread without locking.
+     */
+    private volatile JumpEventRing jumpEvents;
+
     /**
      * Initializes the model. Should be called before starting execution.
      */
@@ -44,6 +50,39 @@ public abstract class Model {
         update();
     }
 
+    /**
+     * Adds a handler which receives the jumps of the model on its own thread.
+     *
+     * @param handler the handler of jump events.
+     */
+    public synchronized void addJumpEventHandler(JumpEventHandler handler) {
+        if (jumpEvents == null) {
+            jumpEvents = new JumpEventRing(ModelUtils.JUMP_EVENT_RING_CAPACITY);
+        }
+        jumpEvents.addHandler(handler);
+    }
+
+    /**
+     * Stops all handlers of jump events and waits until they processed the published events. Can be called
+     * from any thread; if it is called while the model is being updated on another thread, the jumps of the running
+     * update may be not passed to the handlers.
+     */
+    public synchronized void closeJumpEventHandlers() {
+        if (jumpEvents != null) {
+            jumpEvents.close();
+            jumpEvents = null;
+        }
+    }
+
+    /**
+     * Returns the ring through which the model should publish its jumps.
+     *
+     * @return the ring, or {@code null} if nobody listens to the jumps.
+     */
+    protected final JumpEventRing getJumpEvents() {
+        return jumpEvents;
+    }
+
     public String getGUIFileName() {
         return GUI_FILE_NAME;
     }
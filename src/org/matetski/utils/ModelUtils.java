@@ -12,4 +12,9 @@ public final class ModelUtils {
     public static final String SIZE_PARAMETER = "SIZE";
 
     public final static String GUI_FILE_NAME = "/org/matetski/gui/simulator.fxml";
+
+    /**
+     * The number of events in the ring through which a model publishes its jumps.
+     */
+    public final static int JUMP_EVENT_RING_CAPACITY = 1 << 16;
 }
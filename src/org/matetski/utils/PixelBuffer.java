@@ -0,0 +1,114 @@
+package org.matetski.utils;
+
+import java.util.Arrays;
+
+/**
+ * An image stored as an array of ARGB pixels, row by row. Models can rasterize their output into the buffer
+ * and upload it to the screen at once, instead of issuing a drawing command per element.
+ *
+ * @author K.Matetski
+ */
+public final class PixelBuffer {
+
+    /**
+     * Opaque colors in the ARGB format.
+     */
+    public static final int WHITE = 0xFFFFFFFF;
+    public static final int BLACK = 0xFF000000;
+    public static final int BLUE = 0xFF0000FF;
+    public static final int RED = 0xFFFF0000;
+    public static final int GREEN = 0xFF008000;
+
+    private final int width, height;
+
+    private final int[] pixels;
+
+    public PixelBuffer(int width, int height) {
+        this.width = width;
+        this.height = height;
+        pixels = new int[width * height];
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns the pixels of the buffer, row by row.
+     *
+     * @return the array of the pixels, which is not copied.
+     */
+    public int[] getPixels() {
+        return pixels;
+    }
+
+    /**
+     * Fills the whole buffer with the given color.
+     */
+    public void fill(int color) {
+        Arrays.fill(pixels, color);
+    }
+
+    /**
+     * Sets the color of a pixel, the pixels outside of the buffer are ignored.
+     */
+    public void setPixel(int x, int y, int color) {
+        if (x >= 0 && x < width && y >= 0 && y < height) {
+            pixels[y * width + x] = color;
+        }
+    }
+
+    /**
+     * Draws a line of width one between the given points, using the Bresenham algorithm.
+     */
+    public void drawLine(double fromX, double fromY, double toX, double toY, int color) {
+        int x = (int) Math.floor(fromX), y = (int) Math.floor(fromY),
+                endX = (int) Math.floor(toX), endY = (int) Math.floor(toY);
+        if ((x < 0 && endX < 0) || (x >= width && endX >= width)
+                || (y < 0 && endY < 0) || (y >= height && endY >= height)) {
+            return;
+        }
+        int dx = Math.abs(endX - x), dy = -Math.abs(endY - y),
+                stepX = x < endX ? 1 : -1, stepY = y < endY ? 1 : -1,
+                error = dx + dy;
+        while (true) {
+            setPixel(x, y, color);
+            if (x == endX && y == endY) {
+                return;
+            }
+            int doubleError = 2 * error;
+            if (doubleError >= dy) {
+                error += dy;
+                x += stepX;
+            }
+            if (doubleError <= dx) {
+                error += dx;
+                y += stepY;
+            }
+        }
+    }
+
+    /**
+     * Fills a disc inscribed into the square with the given upper left corner and side.
+     */
+    public void fillDisc(double left, double top, double diameter, int color) {
+        double radius = diameter / 2,
+                centerX = left + radius,
+                centerY = top + radius;
+        int fromX = Math.max(0, (int) Math.floor(left)), toX = Math.min(width, (int) Math.ceil(left + diameter)),
+                fromY = Math.max(0, (int) Math.floor(top)), toY = Math.min(height, (int) Math.ceil(top + diameter));
+        for (int y = fromY; y < toY; y++) {
+            double distanceY = y + 0.5 - centerY;
+            for (int x = fromX; x < toX; x++) {
+                double distanceX = x + 0.5 - centerX;
+                if (distanceX * distanceX + distanceY * distanceY <= radius * radius) {
+                    pixels[y * width + x] = color;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package org.matetski.models.tasep;
+
+import java.util.SplittableRandom;
+
+/**
+ * Several TASEPs on a window of the lattice, evolving under the basic coupling: every bond carries a Poisson clock
+ * shared by all systems, and when it rings, the particle on the left of the bond jumps in each system where
+ * the right site is empty. The coupling preserves the order of configurations, and the sites where two systems
+ * differ are the positions of second class particles.
+ * <p>
+ * The occupation variables of the systems are interleaved, so that one clock event reads and writes
+ * a single contiguous block of memory for all systems. The window is closed, i.e. particles neither enter nor leave
+ * it, so it should contain the region which the particles reach during the run.
+ *
+ * @author K.Matetski
+ */
+public final class CoupledTASEP {
+
+    /**
+     * The left most site of the window.
+     */
+    private final int left;
+
+    private final int sitesNumber;
+
+    private final int systemsNumber;
+
+    private final double jumpRate;
+
+    /**
+     * The occupation variables, the value for the site {@code left + x} in the system {@code s} is stored
+     * at {@code x * systemsNumber + s}.
+     */
+    private final byte[] occupation;
+
+    private final SplittableRandom random;
+
+    private double modelTime = 0;
+
+    /**
+     * Creates empty systems on the window between the given sites.
+     *
+     * @param left          the left most site of the window.
+     * @param right         the right most site of the window.
+     * @param systemsNumber the number of coupled systems.
+     * @param jumpRate      the jump rate of the particles.
+     * @param seed          the seed of the shared clocks.
+     */
+    public CoupledTASEP(int left, int right, int systemsNumber, double jumpRate, long seed) {
+        this.left = left;
+        this.sitesNumber = right - left + 1;
+        this.systemsNumber = systemsNumber;
+        this.jumpRate = jumpRate;
+        occupation = new byte[sitesNumber * systemsNumber];
+        random = new SplittableRandom(seed);
+    }
+
+    /**
+     * Places the particles of the given initial data inside the window. The flat initial data starts
+     * at the right most site of the window.
+     */
+    public void setConfiguration(int system, InitialData initialData) {
+        clear(system);
+        long particlesNumber = (initialData == InitialData.FLAT) ? left + sitesNumber - 1 : 0;
+        for (long k = 0; ; k++) {
+            int position = initialData.getInitialPosition(particlesNumber, k);
+            if (position < left) {
+                break;
+            }
+            if (contains(position)) {
+                occupation[index(system, position)] = 1;
+            }
+        }
+    }
+
+    /**
+     * Places the particles at the given sites.
+     */
+    public void setConfiguration(int system, int[] positions) {
+        clear(system);
+        for (int position : positions) {
+            occupation[index(system, position)] = 1;
+        }
+    }
+
+    /**
+     * Copies the configuration of one system into another one, e.g. before perturbing it.
+     */
+    public void copyConfiguration(int from, int to) {
+        for (int x = 0; x < sitesNumber; x++) {
+            occupation[x * systemsNumber + to] = occupation[x * systemsNumber + from];
+        }
+    }
+
+    /**
+     * Adds a particle to the given site if it is empty, or removes it otherwise.
+     */
+    public void flip(int system, int site) {
+        occupation[index(system, site)] ^= 1;
+    }
+
+    private void clear(int system) {
+        for (int x = 0; x < sitesNumber; x++) {
+            occupation[x * systemsNumber + system] = 0;
+        }
+    }
+
+    private boolean contains(int site) {
+        return site >= left && site < left + sitesNumber;
+    }
+
+    private int index(int system, int site) {
+        return (site - left) * systemsNumber + system;
+    }
+
+    /**
+     * Lets all systems evolve during the given time, using one clock event per jump attempt for all of them.
+     *
+     * @param duration the time interval of the evolution.
+     */
+    public void advance(double duration) {
+        int bondsNumber = sitesNumber - 1;
+        if (bondsNumber <= 0) {
+            modelTime += duration;
+            return;
+        }
+        double totalRate = jumpRate * bondsNumber,
+                localTime = -Math.log(1 - random.nextDouble()) / totalRate;
+        while (localTime <= duration) {
+            int from = random.nextInt(bondsNumber) * systemsNumber,
+                    to = from + systemsNumber;
+            for (int system = 0; system < systemsNumber; system++) {
+                // The particle jumps if the left site is occupied and the right one is empty.
+                int jump = occupation[from + system] & (occupation[to + system] ^ 1);
+                occupation[from + system] -= jump;
+                occupation[to + system] += jump;
+            }
+            localTime += -Math.log(1 - random.nextDouble()) / totalRate;
+        }
+        modelTime += duration;
+    }
+
+    public double getModelTime() {
+        return modelTime;
+    }
+
+    public int getSystemsNumber() {
+        return systemsNumber;
+    }
+
+    public boolean isOccupied(int system, int site) {
+        return contains(site) && occupation[index(system, site)] != 0;
+    }
+
+    /**
+     * Returns the number of particles of the system to the right of the given site, inside the window.
+     */
+    public int countParticlesRightOf(int system, int site) {
+        int count = 0;
+        for (int x = Math.max(0, site - left + 1); x < sitesNumber; x++) {
+            count += occupation[x * systemsNumber + system];
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of sites where the two systems differ.
+     */
+    public int getDiscrepanciesNumber(int system, int reference) {
+        int count = 0;
+        for (int x = 0; x < sitesNumber; x++) {
+            count += occupation[x * systemsNumber + system] ^ occupation[x * systemsNumber + reference];
+        }
+        return count;
+    }
+
+    /**
+     * Returns the sites where the two systems differ, from left to right. Whether a discrepancy is a particle
+     * of the system or of the reference can be checked by {@link #isOccupied(int, int)}.
+     */
+    public int[] getDiscrepancies(int system, int reference) {
+        int[] discrepancies = new int[getDiscrepanciesNumber(system, reference)];
+        int count = 0;
+        for (int x = 0; x < sitesNumber; x++) {
+            if (occupation[x * systemsNumber + system] != occupation[x * systemsNumber + reference]) {
+                discrepancies[count++] = left + x;
+            }
+        }
+        return discrepancies;
+    }
+
+    /**
+     * Returns the number of discrepancies of every system with the reference one.
+     */
+    public int[] getDiscrepanciesNumbers(int reference) {
+        int[] counts = new int[systemsNumber];
+        for (int x = 0; x < sitesNumber; x++) {
+            byte referenceOccupation = occupation[x * systemsNumber + reference];
+            for (int system = 0; system < systemsNumber; system++) {
+                counts[system] += occupation[x * systemsNumber + system] ^ referenceOccupation;
+            }
+        }
+        return counts;
+    }
+}
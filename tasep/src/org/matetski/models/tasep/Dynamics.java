@@ -0,0 +1,33 @@
+package org.matetski.models.tasep;
+
+/**
+ * The rules by which the particles move. Every particle jumps to the right with the jump rate; the second rate
+ * is the rate of the jumps to the left for ASEP and PushASEP, and the parameter {@code q} for q-TASEP.
+ * <ul>
+ * <li>TASEP: a jump to the right happens if the target site is empty.</li>
+ * <li>ASEP: the particles also jump to the left if the target site is empty.</li>
+ * <li>PushASEP: the jumps to the right are blocked, the jumps to the left push the particles standing
+ * next to the jumping one.</li>
+ * <li>q-TASEP: a particle with {@code g} empty sites in front of it jumps to the right with the rate
+ * {@code jumpRate (1 - q^g)}.</li>
+ * </ul>
+ *
+ * @author K.Matetski
+ */
+public enum Dynamics {
+    TASEP("TASEP"),
+    ASEP("ASEP"),
+    PUSH_ASEP("PushASEP"),
+    Q_TASEP("q-TASEP");
+
+    private final String name;
+
+    Dynamics(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
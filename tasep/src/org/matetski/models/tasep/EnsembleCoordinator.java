@@ -0,0 +1,437 @@
+package org.matetski.models.tasep;
+
+import org.matetski.statistics.Histogram;
+import org.matetski.statistics.OnlineMoments;
+import org.matetski.utils.ModelUtils;
+
+import java.awt.*;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.matetski.models.tasep.TASEPUtils.*;
+
+/**
+ * Runs an ensemble of replicas of the model in several local worker processes, see {@link EnsembleWorker},
+ * so that each worker has its own heap and garbage collector. The replicas are split into jobs, which are handed out
+ * to the workers through their standard streams. The moments and the histograms of the final heights at the given
+ * sites are collected per job and merged in the order of the jobs at the end, so the result does not depend on
+ * the number of workers. If a worker dies or does not finish a job in time, it is replaced and its job is given
+ * to a new worker, up to {@link TASEPUtils#ENSEMBLE_MAX_ATTEMPTS} times.
+ *
+ * @author K.Matetski
+ */
+public final class EnsembleCoordinator {
+
+    /**
+     * The time in milliseconds a worker thread waits for a job before checking if the run is over.
+     */
+    private static final long POLL_MILLIS = 100;
+
+    private final InitialData initialData;
+
+    private final double jumpRate;
+
+    private final Dynamics dynamics;
+
+    private final double leftRate;
+
+    private final Dimension size;
+
+    private final double modelTime;
+
+    private final int[] sites;
+
+    private final double histogramMin, histogramMax;
+
+    private final int binsNumber;
+
+    private final List<String> jvmOptions = new ArrayList<>();
+
+    /**
+     * The time in milliseconds after which a worker running a job is considered hung and is destroyed.
+     */
+    private long jobTimeoutMillis = ENSEMBLE_JOB_TIMEOUT_MILLIS;
+
+    /**
+     * Destroys the workers which exceed the time of a job, exists during a run.
+     */
+    private ScheduledThreadPoolExecutor watchdog;
+
+    private OnlineMoments[] moments;
+
+    private Histogram[] histograms;
+
+    private final AtomicInteger failedJobs = new AtomicInteger(), restartedWorkers = new AtomicInteger();
+
+    /**
+     * The errors of the jobs which failed {@link TASEPUtils#ENSEMBLE_MAX_ATTEMPTS} times.
+     */
+    private final List<IOException> failures = Collections.synchronizedList(new ArrayList<>());
+
+    /**
+     * Creates a coordinator of the runs of the model with the given parameters.
+     *
+     * @param parameters   the parameters of the model, the missing ones take their default values,
+     *                     except for the size of the system which is required.
+     * @param modelTime    the duration of each run.
+     * @param sites        the sites where the heights are measured at the end of the runs.
+     * @param histogramMin the left end of the histograms of the heights.
+     * @param histogramMax the right end of the histograms of the heights.
+     * @param binsNumber   the number of bins of the histograms.
+     */
+    public EnsembleCoordinator(HashMap<String, Object> parameters, double modelTime, int[] sites,
+                               double histogramMin, double histogramMax, int binsNumber) {
+        if (!(parameters.get(ModelUtils.SIZE_PARAMETER) instanceof Dimension)) {
+            throw new IllegalArgumentException("The size of the system is missing in the parameters");
+        }
+        HashMap<String, Object> allParameters = new TASEPModel().getDefaultParameters();
+        allParameters.putAll(parameters);
+        initialData = (InitialData) allParameters.get(INITIAL_DATA_PARAMETER);
+        jumpRate = (Double) allParameters.get(JUMP_RATE_PARAMETER);
+        dynamics = (Dynamics) allParameters.get(DYNAMICS_PARAMETER);
+        leftRate = (Double) allParameters.get(LEFT_RATE_PARAMETER);
+        size = (Dimension) allParameters.get(ModelUtils.SIZE_PARAMETER);
+        this.modelTime = modelTime;
+        this.sites = sites.clone();
+        this.histogramMin = histogramMin;
+        this.histogramMax = histogramMax;
+        this.binsNumber = binsNumber;
+    }
+
+    /**
+     * Sets the options of the worker virtual machines, e.g. {@code -Xmx4g}.
+     */
+    public void setJvmOptions(String... options) {
+        jvmOptions.clear();
+        jvmOptions.addAll(Arrays.asList(options));
+    }
+
+    /**
+     * Sets the time after which a worker running a job is destroyed, and the job is given to another worker.
+     *
+     * @param jobTimeoutMillis the time in milliseconds.
+     */
+    public void setJobTimeout(long jobTimeoutMillis) {
+        this.jobTimeoutMillis = jobTimeoutMillis;
+    }
+
+    /**
+     * Runs the replicas and merges their statistics.
+     *
+     * @param seed           the seed of the first replica, the next replicas get the next seeds.
+     * @param replicasNumber the number of replicas.
+     * @param replicasPerJob the number of replicas given to a worker at once.
+     * @param workersNumber  the number of worker processes.
+     */
+    public void run(long seed, int replicasNumber, int replicasPerJob, int workersNumber) throws InterruptedException {
+        int jobsNumber = (replicasNumber + replicasPerJob - 1) / replicasPerJob;
+        BlockingQueue<Job> pendingJobs = new LinkedBlockingQueue<>();
+        for (int job = 0; job < jobsNumber; job++) {
+            pendingJobs.add(new Job(job, seed + (long) job * replicasPerJob,
+                    Math.min(replicasPerJob, replicasNumber - job * replicasPerJob)));
+        }
+        Result[] results = new Result[jobsNumber];
+        CountDownLatch remainingJobs = new CountDownLatch(jobsNumber);
+        failedJobs.set(0);
+        restartedWorkers.set(0);
+        failures.clear();
+        watchdog = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "Ensemble watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // The deadlines of the finished jobs are cancelled, they should not pile up until the timeout.
+        watchdog.setRemoveOnCancelPolicy(true);
+
+        Thread[] threads = new Thread[workersNumber];
+        for (int k = 0; k < workersNumber; k++) {
+            threads[k] = new Thread(() -> serve(pendingJobs, results, remainingJobs), "Ensemble worker " + k);
+            threads[k].setDaemon(true);
+            threads[k].start();
+        }
+        try {
+            remainingJobs.await();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } finally {
+            watchdog.shutdownNow();
+        }
+
+        moments = new OnlineMoments[sites.length];
+        histograms = new Histogram[sites.length];
+        for (int k = 0; k < sites.length; k++) {
+            moments[k] = new OnlineMoments();
+            histograms[k] = new Histogram(histogramMin, histogramMax, binsNumber);
+        }
+        for (Result result : results) {
+            if (result != null) {
+                for (int k = 0; k < sites.length; k++) {
+                    moments[k].merge(result.moments[k]);
+                    histograms[k].merge(result.histograms[k]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gives the jobs to one worker process, starting a new one if it dies.
+     */
+    private void serve(BlockingQueue<Job> pendingJobs, Result[] results, CountDownLatch remainingJobs) {
+        WorkerProcess worker = null;
+        try {
+            while (remainingJobs.getCount() > 0) {
+                Job job = pendingJobs.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (job == null) {
+                    continue;
+                }
+                try {
+                    if (worker == null) {
+                        worker = new WorkerProcess();
+                    }
+                    results[job.number] = worker.run(job);
+                    remainingJobs.countDown();
+                } catch (Throwable e) {
+                    // Besides the failures of the streams, a corrupt answer can make the reading throw anything,
+                    // e.g. an invalid histogram or a huge array, and the job should not be lost with the thread.
+                    if (worker != null) {
+                        worker.destroy();
+                        worker = null;
+                        restartedWorkers.incrementAndGet();
+                    }
+                    if (++job.attempts < ENSEMBLE_MAX_ATTEMPTS) {
+                        pendingJobs.add(job);
+                    } else {
+                        failures.add(new IOException("Ensemble job " + job.number + " failed", e));
+                        failedJobs.incrementAndGet();
+                        remainingJobs.countDown();
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (worker != null) {
+                worker.stop();
+            }
+        }
+    }
+
+    /**
+     * Returns the moments of the final heights at the site with the given number.
+     */
+    public OnlineMoments getMoments(int siteNumber) {
+        return moments[siteNumber];
+    }
+
+    /**
+     * Returns the histogram of the final heights at the site with the given number.
+     */
+    public Histogram getHistogram(int siteNumber) {
+        return histograms[siteNumber];
+    }
+
+    /**
+     * Returns the number of jobs which failed {@link TASEPUtils#ENSEMBLE_MAX_ATTEMPTS} times, their replicas are missing in the results.
+     */
+    public int getFailedJobs() {
+        return failedJobs.get();
+    }
+
+    /**
+     * Returns the errors of the failed jobs, the cause of each one is the error of its last attempt.
+     */
+    public List<IOException> getFailures() {
+        return new ArrayList<>(failures);
+    }
+
+    /**
+     * Returns the number of worker processes which died or hung and were replaced.
+     */
+    public int getRestartedWorkers() {
+        return restartedWorkers.get();
+    }
+
+    /**
+     * A part of the replicas.
+     */
+    private static final class Job {
+
+        private final int number;
+
+        private final long firstSeed;
+
+        private final int replicasNumber;
+
+        private int attempts = 0;
+
+        Job(int number, long firstSeed, int replicasNumber) {
+            this.number = number;
+            this.firstSeed = firstSeed;
+            this.replicasNumber = replicasNumber;
+        }
+    }
+
+    /**
+     * The statistics of the replicas of a job.
+     */
+    private static final class Result {
+
+        private final OnlineMoments[] moments;
+
+        private final Histogram[] histograms;
+
+        Result(int sitesNumber) {
+            moments = new OnlineMoments[sitesNumber];
+            histograms = new Histogram[sitesNumber];
+        }
+    }
+
+    /**
+     * A running worker process and its standard streams.
+     */
+    private final class WorkerProcess {
+
+        private final Process process;
+
+        private final DataOutputStream output;
+
+        private final DataInputStream input;
+
+        WorkerProcess() throws IOException {
+            List<String> command = new ArrayList<>();
+            command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+            command.addAll(jvmOptions);
+            command.add("-cp");
+            command.add(System.getProperty("java.class.path"));
+            command.add(EnsembleWorker.class.getName());
+            process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+            output = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+            input = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+
+            output.writeUTF(initialData.name());
+            output.writeDouble(jumpRate);
+            output.writeUTF(dynamics.name());
+            output.writeDouble(leftRate);
+            output.writeInt(size.width);
+            output.writeInt(size.height);
+            output.writeDouble(modelTime);
+            output.writeInt(sites.length);
+            for (int site : sites) {
+                output.writeInt(site);
+            }
+            output.writeDouble(histogramMin);
+            output.writeDouble(histogramMax);
+            output.writeInt(binsNumber);
+        }
+
+        Result run(Job job) throws IOException {
+            // Destroying the process closes its streams, so the reading below fails and the job is retried.
+            AtomicBoolean timedOut = new AtomicBoolean();
+            ScheduledFuture<?> deadline = watchdog.schedule(() -> {
+                timedOut.set(true);
+                destroy();
+            }, jobTimeoutMillis, TimeUnit.MILLISECONDS);
+            try {
+                output.writeInt(job.number);
+                output.writeLong(job.firstSeed);
+                output.writeInt(job.replicasNumber);
+                output.flush();
+                if (input.readInt() != job.number) {
+                    throw new IOException("The worker answered a wrong job");
+                }
+                Result result = new Result(sites.length);
+                for (int k = 0; k < sites.length; k++) {
+                    result.moments[k] = OnlineMoments.read(input);
+                    result.histograms[k] = Histogram.read(input);
+                }
+                return result;
+            } catch (IOException e) {
+                if (timedOut.get()) {
+                    throw new IOException("The worker did not finish the job in " + jobTimeoutMillis + " ms", e);
+                }
+                throw e;
+            } finally {
+                deadline.cancel(false);
+            }
+        }
+
+        void stop() {
+            try {
+                output.writeInt(-1);
+                output.flush();
+                process.waitFor();
+            } catch (IOException e) {
+                destroy();
+            } catch (InterruptedException e) {
+                destroy();
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * Kills the process, a hung or stopped process does not react to a termination request.
+         */
+        void destroy() {
+            process.destroyForcibly();
+        }
+    }
+
+    /**
+     * Runs an ensemble from the command line. The arguments are the initial data ({@code FLAT}, {@code HALF_FLAT}
+     * or {@code STEP}), the jump rate, the width and the height of the system, the model time, the number
+     * of replicas, the number of workers and the sites where the heights are measured.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        if (args.length < 8) {
+            System.err.println("Usage: EnsembleCoordinator <initial data> <jump rate> <width> <height> <model time> "
+                    + "<replicas> <workers> <site>...");
+            System.exit(1);
+        }
+        HashMap<String, Object> parameters = new HashMap<>();
+        parameters.put(INITIAL_DATA_PARAMETER, InitialData.valueOf(args[0]));
+        parameters.put(JUMP_RATE_PARAMETER, Double.parseDouble(args[1]));
+        parameters.put(ModelUtils.SIZE_PARAMETER, new Dimension(Integer.parseInt(args[2]), Integer.parseInt(args[3])));
+        double modelTime = Double.parseDouble(args[4]);
+        int replicasNumber = Integer.parseInt(args[5]), workersNumber = Integer.parseInt(args[6]);
+        int[] sites = new int[args.length - 7];
+        for (int k = 0; k < sites.length; k++) {
+            sites[k] = Integer.parseInt(args[k + 7]);
+        }
+
+        // The heights stay within the distance travelled by the particles from the initial profile.
+        double range = 2 * modelTime + 2 * Arrays.stream(sites).map(Math::abs).max().orElse(0) + 2;
+        EnsembleCoordinator coordinator = new EnsembleCoordinator(parameters, modelTime, sites, -range, range,
+                (int) Math.ceil(2 * range));
+        coordinator.run(System.nanoTime(), replicasNumber,
+                Math.max(1, replicasNumber / (ENSEMBLE_JOBS_PER_WORKER * workersNumber)), workersNumber);
+        for (int k = 0; k < sites.length; k++) {
+            OnlineMoments moments = coordinator.getMoments(k);
+            System.out.println("h(" + sites[k] + "): count " + moments.getCount() + ", mean " + moments.getMean()
+                    + ", variance " + moments.getVariance() + ", skewness " + moments.getSkewness()
+                    + ", kurtosis " + moments.getKurtosis());
+        }
+        System.out.println("Failed jobs: " + coordinator.getFailedJobs()
+                + ", restarted workers: " + coordinator.getRestartedWorkers());
+        for (IOException failure : coordinator.getFailures()) {
+            System.out.println(failure.getMessage() + ": " + failure.getCause().getMessage());
+        }
+    }
+}
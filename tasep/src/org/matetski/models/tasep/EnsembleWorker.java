@@ -0,0 +1,140 @@
+package org.matetski.models.tasep;
+
+import org.matetski.statistics.Histogram;
+import org.matetski.statistics.OnlineMoments;
+import org.matetski.utils.ModelUtils;
+
+import java.awt.*;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+
+import static org.matetski.models.tasep.TASEPUtils.*;
+
+/**
+ * A process which runs replicas of the model for an {@link EnsembleCoordinator}. The worker reads the description
+ * of the run from the standard input: the initial data, the jump rate, the dynamics, the left rate, the width
+ * and the height of the system, the model time, the sites and the bins of the histograms. Then it reads jobs,
+ * each one is the number of the job, the seed of the first replica and the number of replicas, and answers with
+ * the number of the job followed by the moments and the histogram of the final heights at each site.
+ * A negative number of a job stops the worker. The replicas of TASEP are advanced together by a {@link ReplicaTASEP},
+ * in groups of {@link TASEPUtils#ENSEMBLE_REPLICAS_PER_KERNEL}, the other dynamics are run by {@link TASEPModel}.
+ *
+ * @author K.Matetski
+ */
+public final class EnsembleWorker {
+
+    private final HashMap<String, Object> parameters;
+
+    private final double modelTime;
+
+    private final int[] sites;
+
+    private final double histogramMin, histogramMax;
+
+    private final int binsNumber;
+
+    /**
+     * The number of particles in a replica.
+     */
+    private final int particlesNumber;
+
+    private EnsembleWorker(DataInputStream input) throws IOException {
+        TASEPModel model = new TASEPModel();
+        parameters = model.getDefaultParameters();
+        parameters.put(INITIAL_DATA_PARAMETER, InitialData.valueOf(input.readUTF()));
+        parameters.put(JUMP_RATE_PARAMETER, input.readDouble());
+        parameters.put(DYNAMICS_PARAMETER, Dynamics.valueOf(input.readUTF()));
+        parameters.put(LEFT_RATE_PARAMETER, input.readDouble());
+        parameters.put(ModelUtils.SIZE_PARAMETER, new Dimension(input.readInt(), input.readInt()));
+        modelTime = input.readDouble();
+        sites = new int[input.readInt()];
+        for (int k = 0; k < sites.length; k++) {
+            sites[k] = input.readInt();
+        }
+        histogramMin = input.readDouble();
+        histogramMax = input.readDouble();
+        binsNumber = input.readInt();
+        model.initialize();
+        model.setParameters(parameters);
+        particlesNumber = (int) model.getParticles().size();
+        model.getParticles().release();
+    }
+
+    /**
+     * Runs the replicas of a job and writes their statistics.
+     */
+    private void run(long firstSeed, int replicasNumber, DataOutputStream output) throws IOException {
+        OnlineMoments[] moments = new OnlineMoments[sites.length];
+        Histogram[] histograms = new Histogram[sites.length];
+        for (int k = 0; k < sites.length; k++) {
+            moments[k] = new OnlineMoments();
+            histograms[k] = new Histogram(histogramMin, histogramMax, binsNumber);
+        }
+        if (parameters.get(DYNAMICS_PARAMETER) == Dynamics.TASEP) {
+            for (int first = 0; first < replicasNumber; first += ENSEMBLE_REPLICAS_PER_KERNEL) {
+                ReplicaTASEP replicas = new ReplicaTASEP((InitialData) parameters.get(INITIAL_DATA_PARAMETER),
+                        (Double) parameters.get(JUMP_RATE_PARAMETER), particlesNumber,
+                        Math.min(ENSEMBLE_REPLICAS_PER_KERNEL, replicasNumber - first), firstSeed + first);
+                replicas.advance(modelTime);
+                for (int replica = 0; replica < replicas.getReplicasNumber(); replica++) {
+                    for (int k = 0; k < sites.length; k++) {
+                        long height = replicas.getHeight(replica, sites[k]);
+                        moments[k].add(height);
+                        histograms[k].add(height);
+                    }
+                }
+            }
+        } else {
+            for (int replica = 0; replica < replicasNumber; replica++) {
+                TASEPModel model = new TASEPModel();
+                parameters.put(SEED_PARAMETER, firstSeed + replica);
+                model.initialize();
+                model.setParameters(parameters);
+                model.advance(modelTime);
+                for (int k = 0; k < sites.length; k++) {
+                    long height = model.getHeight(sites[k]);
+                    moments[k].add(height);
+                    histograms[k].add(height);
+                }
+                model.getParticles().release();
+            }
+        }
+        for (int k = 0; k < sites.length; k++) {
+            moments[k].write(output);
+            histograms[k].write(output);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        // The standard output carries the results, everything printed by the code goes to the standard error.
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(FileDescriptor.out)));
+        System.setOut(System.err);
+        DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(FileDescriptor.in)));
+
+        try {
+            EnsembleWorker worker = new EnsembleWorker(input);
+            while (true) {
+                int job = input.readInt();
+                if (job < 0) {
+                    break;
+                }
+                long firstSeed = input.readLong();
+                int replicasNumber = input.readInt();
+                output.writeInt(job);
+                worker.run(firstSeed, replicasNumber, output);
+                output.flush();
+            }
+        } catch (EOFException e) {
+            // The coordinator is gone.
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package org.matetski.models.tasep;
+
+import org.matetski.utils.ModelUtils;
+import org.matetski.utils.PixelBuffer;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.matetski.models.tasep.TASEPUtils.*;
+
+/**
+ * Exports the evolution of the model as a sequence of PNG images, without showing a window.
+ * The frames are taken at fixed model-time intervals. The simulation thread only copies the visible particles,
+ * while rasterization and encoding run on a pool of background threads. The number of frames waiting
+ * for encoding is bounded; if all of them are busy, the frame is dropped instead of stalling the simulation,
+ * unless the exporter is asked to wait for the encoders.
+ *
+ * @author K.Matetski
+ */
+public final class FrameExporter {
+
+    private final File directory;
+
+    private final int width, height;
+
+    private final int encodersNumber;
+
+    /**
+     * The frames which are not being encoded and can be filled by the simulation.
+     */
+    private final BlockingQueue<Slot> freeSlots;
+
+    /**
+     * Is true if the simulation waits for a free frame instead of dropping the frame.
+     */
+    private final boolean waitForEncoders;
+
+    private final AtomicInteger failedFrames = new AtomicInteger();
+
+    private int droppedFrames = 0;
+
+    /**
+     * Creates an exporter writing images of the given size.
+     *
+     * @param directory      the directory where the images are written.
+     * @param width          the width of the images in pixels.
+     * @param height         the height of the images in pixels.
+     * @param encodersNumber the number of encoding threads.
+     * @param queueCapacity  the number of frames which can wait for encoding.
+     * @param waitForEncoders if {@code true}, the simulation waits for the encoders instead of dropping frames.
+     */
+    public FrameExporter(File directory, int width, int height, int encodersNumber, int queueCapacity,
+                         boolean waitForEncoders) {
+        this.directory = directory;
+        this.waitForEncoders = waitForEncoders;
+        this.width = width;
+        this.height = height;
+        this.encodersNumber = encodersNumber;
+        freeSlots = new ArrayBlockingQueue<>(queueCapacity);
+        for (int k = 0; k < queueCapacity; k++) {
+            freeSlots.add(new Slot());
+        }
+    }
+
+    /**
+     * Runs the model and exports its frames. The model should be initialized with the size of the images.
+     * The exporter can be used for several runs, the frames of each run are numbered from zero.
+     *
+     * @param model         the model to run.
+     * @param frameInterval the model time between two frames.
+     * @param framesNumber  the number of frames to export.
+     */
+    public void export(TASEPModel model, double frameInterval, int framesNumber) throws InterruptedException {
+        // The pool is stopped at the end of each run, so every run gets its own one.
+        ExecutorService encoders = Executors.newFixedThreadPool(encodersNumber, runnable -> {
+            Thread thread = new Thread(runnable, "TASEP frame encoder");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            for (int frame = 0; frame < framesNumber; frame++) {
+                if (frame > 0) {
+                    model.advance(frameInterval);
+                }
+                Slot slot = waitForEncoders ? freeSlots.take() : freeSlots.poll();
+                if (slot == null) {
+                    droppedFrames++;
+                    continue;
+                }
+                slot.frameNumber = frame;
+                slot.frame.capture(model, width, height);
+                encoders.execute(slot);
+            }
+        } finally {
+            encoders.shutdown();
+        }
+        encoders.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the number of frames of all runs which were skipped because all encoders were busy.
+     */
+    public int getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    /**
+     * Returns the number of frames of all runs which could not be written.
+     */
+    public int getFailedFrames() {
+        return failedFrames.get();
+    }
+
+    /**
+     * A frame together with the buffers needed to encode it, reused for many frames.
+     */
+    private final class Slot implements Runnable {
+
+        private final TASEPFrame frame = new TASEPFrame();
+
+        private final PixelBuffer buffer = new PixelBuffer(width, height);
+
+        /**
+         * The image sharing the pixels with the buffer.
+         */
+        private final BufferedImage image;
+
+        private int frameNumber;
+
+        Slot() {
+            DirectColorModel colorModel = new DirectColorModel(32, 0xFF0000, 0xFF00, 0xFF, 0xFF000000);
+            WritableRaster raster = Raster.createPackedRaster(
+                    new DataBufferInt(buffer.getPixels(), buffer.getPixels().length), width, height, width,
+                    colorModel.getMasks(), null);
+            image = new BufferedImage(colorModel, raster, false, null);
+        }
+
+        @Override
+        public void run() {
+            try {
+                frame.render(buffer);
+                ImageIO.write(image, "png", new File(directory, String.format("frame%06d.png", frameNumber)));
+            } catch (IOException e) {
+                failedFrames.incrementAndGet();
+            } finally {
+                freeSlots.add(this);
+            }
+        }
+    }
+
+    /**
+     * Exports a run of the model from the command line. The arguments are the output directory, the initial data
+     * ({@code FLAT}, {@code HALF_FLAT} or {@code STEP}), the jump rate, the width and the height of the images,
+     * the model time between frames and the number of frames. If the optional last argument is {@code wait},
+     * no frames are dropped.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        if (args.length < 7) {
+            System.err.println("Usage: FrameExporter <directory> <initial data> <jump rate> <width> <height> "
+                    + "<frame interval> <frames> [wait]");
+            System.exit(1);
+        }
+        File directory = new File(args[0]);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            System.err.println("Cannot create the directory " + directory);
+            System.exit(1);
+        }
+        int width = Integer.parseInt(args[3]), height = Integer.parseInt(args[4]);
+
+        TASEPModel model = new TASEPModel();
+        HashMap<String, Object> parameters = model.getDefaultParameters();
+        parameters.put(INITIAL_DATA_PARAMETER, InitialData.valueOf(args[1]));
+        parameters.put(JUMP_RATE_PARAMETER, Double.parseDouble(args[2]));
+        parameters.put(ModelUtils.SIZE_PARAMETER, new Dimension(width, height));
+        model.initialize();
+        model.setParameters(parameters);
+
+        int encodersNumber = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        FrameExporter exporter = new FrameExporter(directory, width, height, encodersNumber,
+                EXPORT_QUEUE_FRAMES_PER_ENCODER * encodersNumber, args.length > 7 && args[7].equals("wait"));
+        exporter.export(model, Double.parseDouble(args[5]), Integer.parseInt(args[6]));
+        System.out.println("Dropped frames: " + exporter.getDroppedFrames()
+                + ", failed frames: " + exporter.getFailedFrames());
+    }
+}
@@ -0,0 +1,35 @@
+package org.matetski.models.tasep;
+
+/**
+ * Particle positions stored in an array on the heap.
+ *
+ * @author K.Matetski
+ */
+final class HeapParticleStorage extends ParticleStorage {
+
+    private final int[] positions;
+
+    HeapParticleStorage(int size) {
+        positions = new int[size];
+    }
+
+    @Override
+    public long size() {
+        return positions.length;
+    }
+
+    @Override
+    public int get(long index) {
+        return positions[(int) index];
+    }
+
+    @Override
+    public void set(long index, int position) {
+        positions[(int) index] = position;
+    }
+
+    @Override
+    public void increment(long index) {
+        positions[(int) index]++;
+    }
+}
@@ -0,0 +1,274 @@
+package org.matetski.models.tasep;
+
+import org.matetski.statistics.FFT;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Computes the spatial covariance {@code <h(x) h(x + r)> - <h>^2} and the structure function
+ * {@code <(h(x + r) - h(x))^2>} of the height on a window of sites. The snapshots of the height are taken
+ * at regular model-time intervals after each initialization of the model, and the functions are averaged over
+ * the window and, for each snapshot number, over the runs of the model. The sums over {@code x} for all {@code r}
+ * at once are computed by the fast Fourier transform on a pool of threads, in {@code O(width log width)} operations
+ * per snapshot.
+ * <p>
+ * The listener never blocks the simulation thread, which may be the application thread: if all buffers are busy
+ * with the previous snapshots, the snapshot is dropped and counted, see {@link #getDroppedSnapshots()}. The averages
+ * of a snapshot number are taken over the runs which contributed to it.
+ *
+ * @author K.Matetski
+ */
+public final class HeightCorrelation implements TASEPListener {
+
+    private final long fromSite;
+
+    private final int width;
+
+    private final double interval;
+
+    /**
+     * The largest distance {@code r}, the averages over longer distances contain too few sites.
+     */
+    private final int maxDistance;
+
+    private final FFT fft;
+
+    private final ExecutorService workers;
+
+    private final BlockingQueue<Snapshot> freeSnapshots;
+
+    private final ThreadLocal<Workspace> workspaces;
+
+    /**
+     * The sums of the functions, of the times and the numbers of the snapshots, for each snapshot number.
+     */
+    private final double[][] covarianceSums, structureSums;
+
+    private final double[] timeSums;
+
+    private final long[] counts;
+
+    /**
+     * The number of the next snapshot in the current run and its model time.
+     */
+    private int nextSnapshot;
+
+    private double nextTime;
+
+    private long droppedSnapshots;
+
+    private volatile boolean closed = false;
+
+    /**
+     * Creates the stage for a window of the given width.
+     *
+     * @param fromSite      the left most site of the window.
+     * @param width         the number of sites in the window, a power of two.
+     * @param interval      the model time between two snapshots.
+     * @param snapshots     the number of snapshots taken in each run.
+     * @param threadsNumber the number of threads computing the functions.
+     */
+    public HeightCorrelation(long fromSite, int width, double interval, int snapshots, int threadsNumber) {
+        if (Integer.bitCount(width) != 1) {
+            throw new IllegalArgumentException("The width should be a power of two: " + width);
+        }
+        this.fromSite = fromSite;
+        this.width = width;
+        this.interval = interval;
+        maxDistance = width / 2;
+        // The zero padding turns the circular correlation into the correlation on the window.
+        fft = new FFT(2 * width);
+        workspaces = ThreadLocal.withInitial(Workspace::new);
+        workers = Executors.newFixedThreadPool(threadsNumber, runnable -> {
+            Thread thread = new Thread(runnable, "Height correlation");
+            thread.setDaemon(true);
+            return thread;
+        });
+        freeSnapshots = new ArrayBlockingQueue<>(2 * threadsNumber);
+        for (int k = 0; k < 2 * threadsNumber; k++) {
+            freeSnapshots.add(new Snapshot());
+        }
+        covarianceSums = new double[snapshots][maxDistance];
+        structureSums = new double[snapshots][maxDistance];
+        timeSums = new double[snapshots];
+        counts = new long[snapshots];
+    }
+
+    @Override
+    public void initialized(TASEPModel model) {
+        nextSnapshot = 0;
+        nextTime = model.getModelTime();
+        updated(model);
+    }
+
+    @Override
+    public void updated(TASEPModel model) {
+        if (closed || nextSnapshot >= counts.length || model.getModelTime() < nextTime) {
+            return;
+        }
+        Snapshot snapshot = freeSnapshots.poll();
+        int number = nextSnapshot++;
+        while (nextTime <= model.getModelTime()) {
+            nextTime += interval;
+        }
+        if (snapshot == null) {
+            droppedSnapshots++;
+            return;
+        }
+        snapshot.number = number;
+        snapshot.time = model.getModelTime();
+        model.getHeights(fromSite, snapshot.heights);
+        try {
+            workers.execute(snapshot);
+        } catch (RejectedExecutionException e) {
+            // The stage was closed meanwhile on another thread.
+            freeSnapshots.add(snapshot);
+            droppedSnapshots++;
+        }
+    }
+
+    /**
+     * Returns the number of snapshots which were dropped since all buffers were busy,
+     * should be called on the simulation thread.
+     */
+    public long getDroppedSnapshots() {
+        return droppedSnapshots;
+    }
+
+    /**
+     * Waits until all taken snapshots are processed and stops the threads, the next updates are ignored.
+     */
+    public void close() throws InterruptedException {
+        closed = true;
+        workers.shutdown();
+        workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    public int getMaxDistance() {
+        return maxDistance;
+    }
+
+    public int getSnapshotsNumber() {
+        return counts.length;
+    }
+
+    /**
+     * Returns the number of runs which contributed to the snapshot with the given number.
+     */
+    public synchronized long getCount(int snapshot) {
+        return counts[snapshot];
+    }
+
+    /**
+     * Returns the average model time of the snapshot with the given number.
+     */
+    public synchronized double getTime(int snapshot) {
+        return timeSums[snapshot] / counts[snapshot];
+    }
+
+    /**
+     * Returns the covariance of the heights at the distance {@code r} in the snapshot with the given number.
+     */
+    public synchronized double getCovariance(int snapshot, int distance) {
+        return covarianceSums[snapshot][distance] / counts[snapshot];
+    }
+
+    /**
+     * Returns the structure function at the distance {@code r} in the snapshot with the given number.
+     */
+    public synchronized double getStructureFunction(int snapshot, int distance) {
+        return structureSums[snapshot][distance] / counts[snapshot];
+    }
+
+    /**
+     * Returns the structure function at the distance {@code r}, averaged over all snapshots.
+     */
+    public synchronized double getStructureFunction(int distance) {
+        double sum = 0;
+        long count = 0;
+        for (int snapshot = 0; snapshot < counts.length; snapshot++) {
+            sum += structureSums[snapshot][distance];
+            count += counts[snapshot];
+        }
+        return sum / count;
+    }
+
+    /**
+     * Computes the functions of a snapshot and adds them to the sums.
+     */
+    private void process(Snapshot snapshot) {
+        Workspace workspace = workspaces.get();
+        double[] real = workspace.real, imaginary = workspace.imaginary, squares = workspace.squares;
+
+        double mean = 0;
+        for (int x = 0; x < width; x++) {
+            mean += snapshot.heights[x];
+        }
+        mean /= width;
+        // The sums of squares of the centred heights over the first x sites.
+        for (int x = 0; x < width; x++) {
+            double value = snapshot.heights[x] - mean;
+            real[x] = value;
+            squares[x + 1] = squares[x] + value * value;
+        }
+        for (int x = width; x < 2 * width; x++) {
+            real[x] = 0;
+        }
+        for (int x = 0; x < 2 * width; x++) {
+            imaginary[x] = 0;
+        }
+        fft.transform(real, imaginary, false);
+        for (int k = 0; k < 2 * width; k++) {
+            real[k] = real[k] * real[k] + imaginary[k] * imaginary[k];
+            imaginary[k] = 0;
+        }
+        fft.transform(real, imaginary, true);
+
+        // Now real[r] is the sum of g(x) g(x + r) over the window, where g is the centred height.
+        synchronized (this) {
+            double[] covariances = covarianceSums[snapshot.number], structures = structureSums[snapshot.number];
+            for (int r = 0; r < maxDistance; r++) {
+                int pairs = width - r;
+                covariances[r] += real[r] / pairs;
+                structures[r] += (squares[pairs] + squares[width] - squares[r] - 2 * real[r]) / pairs;
+            }
+            timeSums[snapshot.number] += snapshot.time;
+            counts[snapshot.number]++;
+        }
+    }
+
+    /**
+     * The heights taken at some model time, which are processed by a worker.
+     */
+    private final class Snapshot implements Runnable {
+
+        private final long[] heights = new long[width];
+
+        private int number;
+
+        private double time;
+
+        @Override
+        public void run() {
+            try {
+                process(this);
+            } finally {
+                freeSnapshots.add(this);
+            }
+        }
+    }
+
+    /**
+     * The buffers of a worker thread.
+     */
+    private final class Workspace {
+
+        private final double[] real = new double[2 * width], imaginary = new double[2 * width],
+                squares = new double[width + 1];
+    }
+}
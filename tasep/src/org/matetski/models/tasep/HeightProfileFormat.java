@@ -0,0 +1,103 @@
+package org.matetski.models.tasep;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Constants and encoding helpers of the binary format of height profiles.
+ * <p>
+ * The file starts with a header: the magic number, the left most site, the number of sites and the number
+ * of snapshots per chunk. The snapshots are grouped into chunks. Each snapshot starts with its model time.
+ * The first snapshot of a chunk stores the height above the left most site and the increments between neighbouring
+ * sites, every next snapshot stores the differences with the previous one. All integers are zig-zag varints,
+ * so the small increments take one byte each. The file ends with the index of chunks, i.e. their offsets,
+ * numbers of snapshots and first times, followed by the offset of the index and the trailing magic number.
+ *
+ * @author K.Matetski
+ */
+final class HeightProfileFormat {
+
+    static final long MAGIC = 0x5441534550485031L;
+
+    static final long INDEX_MAGIC = 0x5441534550494458L;
+
+    /**
+     * The size of the header in bytes.
+     */
+    static final int HEADER_SIZE = 8 + 8 + 4 + 4;
+
+    /**
+     * The size of the record describing a chunk in the index.
+     */
+    static final int INDEX_RECORD_SIZE = 8 + 4 + 8;
+
+    /**
+     * The size of the trailer in bytes: the offset of the index and the magic number.
+     */
+    static final int TRAILER_SIZE = 8 + 8;
+
+    /**
+     * The largest size of a varint in bytes.
+     */
+    static final int MAX_VARINT_SIZE = 10;
+
+    private HeightProfileFormat() {
+    }
+
+    static void putVarint(ByteBuffer buffer, long value) {
+        long zigZag = (value << 1) ^ (value >> 63);
+        while ((zigZag & ~0x7FL) != 0) {
+            buffer.put((byte) ((zigZag & 0x7F) | 0x80));
+            zigZag >>>= 7;
+        }
+        buffer.put((byte) zigZag);
+    }
+
+    static long getVarint(ByteBuffer buffer) {
+        long zigZag = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte next = buffer.get();
+            zigZag |= (long) (next & 0x7F) << shift;
+            if (next >= 0) {
+                break;
+            }
+        }
+        return (zigZag >>> 1) ^ -(zigZag & 1);
+    }
+
+    /**
+     * Writes a snapshot, either as a key snapshot or as the differences with the previous one.
+     */
+    static void putSnapshot(ByteBuffer buffer, double time, long[] heights, long[] previous) {
+        buffer.putDouble(time);
+        if (previous == null) {
+            putVarint(buffer, heights[0]);
+            for (int k = 1; k < heights.length; k++) {
+                putVarint(buffer, heights[k] - heights[k - 1]);
+            }
+        } else {
+            for (int k = 0; k < heights.length; k++) {
+                putVarint(buffer, heights[k] - previous[k]);
+            }
+        }
+    }
+
+    /**
+     * Reads a snapshot written by {@link #putSnapshot}, updating the heights of the previous snapshot in place.
+     *
+     * @return the model time of the snapshot.
+     */
+    static double getSnapshot(ByteBuffer buffer, long[] heights, boolean key) {
+        double time = buffer.getDouble();
+        if (key) {
+            heights[0] = getVarint(buffer);
+            for (int k = 1; k < heights.length; k++) {
+                heights[k] = heights[k - 1] + getVarint(buffer);
+            }
+        } else {
+            for (int k = 0; k < heights.length; k++) {
+                heights[k] += getVarint(buffer);
+            }
+        }
+        return time;
+    }
+}
@@ -0,0 +1,148 @@
+package org.matetski.models.tasep;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import static org.matetski.models.tasep.HeightProfileFormat.*;
+
+/**
+ * Reads height profiles written by {@link HeightProfileWriter}. The index of chunks is read on opening,
+ * so a snapshot is found without decoding the file from the beginning, only its chunk is read.
+ *
+ * @author K.Matetski
+ */
+public final class HeightProfileReader implements AutoCloseable {
+
+    private final FileChannel channel;
+
+    private final long fromSite;
+
+    private final int width;
+
+    private final int snapshotsPerChunk;
+
+    /**
+     * The offsets of the chunks in the file, the last element is the offset of the index.
+     */
+    private final long[] chunkOffsets;
+
+    private final int[] chunkSizes;
+
+    private final double[] chunkTimes;
+
+    private final int snapshotsNumber;
+
+    /**
+     * The times of the snapshots in the last decoded chunk.
+     */
+    private final double[] times;
+
+    /**
+     * The number of the last decoded chunk, or {@code -1}, and the number of its decoded snapshots.
+     */
+    private int cachedChunk = -1, cachedSnapshots;
+
+    public HeightProfileReader(File file) throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            ByteBuffer header = read(0, HEADER_SIZE);
+            if (header.getLong() != MAGIC) {
+                throw new IOException(file + " is not a height profile file");
+            }
+            fromSite = header.getLong();
+            width = header.getInt();
+            snapshotsPerChunk = header.getInt();
+
+            ByteBuffer trailer = read(channel.size() - TRAILER_SIZE, TRAILER_SIZE);
+            long indexOffset = trailer.getLong();
+            if (trailer.getLong() != INDEX_MAGIC) {
+                throw new IOException(file + " is not complete, the writer was not closed");
+            }
+            ByteBuffer index = read(indexOffset, (int) (channel.size() - TRAILER_SIZE - indexOffset));
+            int chunksNumber = index.getInt();
+            chunkOffsets = new long[chunksNumber + 1];
+            chunkSizes = new int[chunksNumber];
+            chunkTimes = new double[chunksNumber];
+            int snapshots = 0;
+            for (int k = 0; k < chunksNumber; k++) {
+                chunkOffsets[k] = index.getLong();
+                chunkSizes[k] = index.getInt();
+                chunkTimes[k] = index.getDouble();
+                snapshots += chunkSizes[k];
+            }
+            chunkOffsets[chunksNumber] = indexOffset;
+            snapshotsNumber = snapshots;
+            times = new double[snapshotsPerChunk];
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public long getFromSite() {
+        return fromSite;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getSnapshotsNumber() {
+        return snapshotsNumber;
+    }
+
+    /**
+     * Returns the model time of the snapshot with the given number.
+     */
+    public double getTime(int snapshot) throws IOException {
+        int chunk = snapshot / snapshotsPerChunk;
+        if (snapshot % snapshotsPerChunk == 0) {
+            return chunkTimes[chunk];
+        }
+        if (chunk != cachedChunk || snapshot % snapshotsPerChunk >= cachedSnapshots) {
+            readSnapshot(snapshot, new long[width]);
+        }
+        return times[snapshot % snapshotsPerChunk];
+    }
+
+    /**
+     * Reads the snapshot with the given number.
+     *
+     * @param snapshot the number of the snapshot.
+     * @param heights  the array of length {@link #getWidth()} to which the heights above the sites
+     *                 {@code getFromSite(), ..., getFromSite() + getWidth() - 1} are written.
+     * @return the model time of the snapshot.
+     */
+    public double readSnapshot(int snapshot, long[] heights) throws IOException {
+        if (snapshot < 0 || snapshot >= snapshotsNumber) {
+            throw new IndexOutOfBoundsException("Snapshot " + snapshot + " of " + snapshotsNumber);
+        }
+        int chunk = snapshot / snapshotsPerChunk;
+        ByteBuffer buffer = read(chunkOffsets[chunk], (int) (chunkOffsets[chunk + 1] - chunkOffsets[chunk]));
+        for (int k = 0; k <= snapshot % snapshotsPerChunk; k++) {
+            times[k] = getSnapshot(buffer, heights, k == 0);
+        }
+        cachedChunk = chunk;
+        cachedSnapshots = snapshot % snapshotsPerChunk + 1;
+        return times[snapshot % snapshotsPerChunk];
+    }
+
+    private ByteBuffer read(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of the height profile file");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,222 @@
+package org.matetski.models.tasep;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.matetski.models.tasep.HeightProfileFormat.*;
+
+/**
+ * Records the height profile on a window of sites at regular model-time intervals into a compact binary file,
+ * see {@link HeightProfileFormat}. The simulation thread only computes the heights, the encoding and writing
+ * through a direct buffer happen on a background thread. If the writer falls behind by more than a few snapshots,
+ * the simulation waits for it, so no snapshot is lost. If the writing fails, the recording stops without
+ * blocking the simulation, and the error is thrown by {@link #close()}.
+ *
+ * @author K.Matetski
+ */
+public final class HeightProfileWriter implements TASEPListener {
+
+    /**
+     * The number of snapshots which can wait for writing.
+     */
+    private static final int QUEUED_SNAPSHOTS = 4;
+
+    /**
+     * The time in milliseconds after which a waiting simulation checks that the writing thread is still working.
+     */
+    private static final long WAIT_MILLIS = 100;
+
+    private final long fromSite;
+
+    private final double interval;
+
+    private final int snapshotsPerChunk;
+
+    private final FileChannel channel;
+
+    private final ByteBuffer buffer;
+
+    private final BlockingQueue<Snapshot> freeSnapshots = new ArrayBlockingQueue<>(QUEUED_SNAPSHOTS),
+            queuedSnapshots = new ArrayBlockingQueue<>(QUEUED_SNAPSHOTS + 1);
+
+    /**
+     * The snapshot which tells the writing thread to finish.
+     */
+    private final Snapshot closing = new Snapshot(0);
+
+    private final Thread writer;
+
+    /**
+     * The model time of the next snapshot.
+     */
+    private double nextTime = 0;
+
+    private volatile IOException error;
+
+    /**
+     * Creates a writer of profiles on the window {@code fromSite, ..., fromSite + width - 1}.
+     *
+     * @param file              the output file.
+     * @param fromSite          the left most site of the window.
+     * @param width             the number of sites in the window.
+     * @param interval          the model time between two snapshots.
+     * @param snapshotsPerChunk the number of snapshots in a chunk, i.e. the distance between key snapshots.
+     */
+    public HeightProfileWriter(File file, long fromSite, int width, double interval, int snapshotsPerChunk)
+            throws IOException {
+        this.fromSite = fromSite;
+        this.interval = interval;
+        this.snapshotsPerChunk = snapshotsPerChunk;
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        buffer = ByteBuffer.allocateDirect(Math.max(1 << 20, 2 * (8 + MAX_VARINT_SIZE * width)));
+        buffer.putLong(MAGIC).putLong(fromSite).putInt(width).putInt(snapshotsPerChunk);
+        for (int k = 0; k < QUEUED_SNAPSHOTS; k++) {
+            freeSnapshots.add(new Snapshot(width));
+        }
+        writer = new Thread(this::write, "Height profile writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void initialized(TASEPModel model) {
+        nextTime = model.getModelTime();
+    }
+
+    @Override
+    public void updated(TASEPModel model) {
+        if (model.getModelTime() < nextTime || !isWriting()) {
+            return;
+        }
+        try {
+            Snapshot snapshot = null;
+            while (snapshot == null) {
+                snapshot = freeSnapshots.poll(WAIT_MILLIS, TimeUnit.MILLISECONDS);
+                if (snapshot == null && !isWriting()) {
+                    return;
+                }
+            }
+            snapshot.time = model.getModelTime();
+            model.getHeights(fromSite, snapshot.heights);
+            // The queue has room for all snapshots and the closing one, so the offer always succeeds.
+            queuedSnapshots.offer(snapshot);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        while (nextTime <= model.getModelTime()) {
+            nextTime += interval;
+        }
+    }
+
+    /**
+     * Checks that the writing thread has neither failed nor stopped.
+     */
+    private boolean isWriting() {
+        return error == null && writer.isAlive();
+    }
+
+    /**
+     * Writes the remaining snapshots and the index, and closes the file.
+     *
+     * @throws IOException if the file could not be written.
+     */
+    public void close() throws IOException {
+        try {
+            queuedSnapshots.offer(closing);
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while closing the height profile file", e);
+        } finally {
+            channel.close();
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * Encodes the snapshots on the background thread.
+     */
+    private void write() {
+        List<Long> chunkOffsets = new ArrayList<>();
+        List<Integer> chunkSizes = new ArrayList<>();
+        List<Double> chunkTimes = new ArrayList<>();
+        long[] previous = null;
+        int inChunk = 0;
+        try {
+            while (true) {
+                Snapshot snapshot = queuedSnapshots.take();
+                if (snapshot == closing) {
+                    break;
+                }
+                if (inChunk == 0) {
+                    chunkOffsets.add(channel.position() + buffer.position());
+                    chunkSizes.add(0);
+                    chunkTimes.add(snapshot.time);
+                    previous = null;
+                }
+                putSnapshot(buffer, snapshot.time, snapshot.heights, previous);
+                chunkSizes.set(chunkSizes.size() - 1, ++inChunk);
+                inChunk %= snapshotsPerChunk;
+                if (buffer.remaining() < buffer.capacity() / 2) {
+                    flush();
+                }
+
+                // Keeps a copy of the heights for the differences, and gives the snapshot back to the simulation.
+                if (previous == null) {
+                    previous = snapshot.heights.clone();
+                } else {
+                    System.arraycopy(snapshot.heights, 0, previous, 0, previous.length);
+                }
+                freeSnapshots.add(snapshot);
+            }
+            long indexOffset = channel.position() + buffer.position();
+            buffer.putInt(chunkOffsets.size());
+            for (int k = 0; k < chunkOffsets.size(); k++) {
+                if (buffer.remaining() < INDEX_RECORD_SIZE + TRAILER_SIZE) {
+                    flush();
+                }
+                buffer.putLong(chunkOffsets.get(k)).putInt(chunkSizes.get(k)).putDouble(chunkTimes.get(k));
+            }
+            buffer.putLong(indexOffset).putLong(INDEX_MAGIC);
+            flush();
+        } catch (IOException e) {
+            error = e;
+        } catch (InterruptedException e) {
+            error = new IOException("The height profile writer was interrupted", e);
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * The heights taken at some model time.
+     */
+    private static final class Snapshot {
+
+        private double time;
+
+        private final long[] heights;
+
+        Snapshot(int width) {
+            heights = new long[width];
+        }
+    }
+}
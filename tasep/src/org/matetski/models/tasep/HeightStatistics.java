@@ -0,0 +1,103 @@
+package org.matetski.models.tasep;
+
+import org.matetski.statistics.OnlineMoments;
+import org.matetski.statistics.QuantileSketch;
+
+/**
+ * Computes running statistics of the height function and of the integrated current at the given sites.
+ * The values are recorded after each update of the model, the memory does not depend on the run length.
+ *
+ * @author K.Matetski
+ */
+public final class HeightStatistics implements TASEPListener {
+
+    private final int[] sites;
+
+    /**
+     * The heights at the sites in the initial configuration, needed to compute the currents.
+     */
+    private final long[] initialHeights;
+
+    private final OnlineMoments[] heightMoments, currentMoments;
+
+    private final QuantileSketch[] heightQuantiles, currentQuantiles;
+
+    /**
+     * Creates statistics of the heights and currents at the given sites.
+     *
+     * @param sites the sites at which the observables are recorded.
+     */
+    public HeightStatistics(int... sites) {
+        this.sites = sites.clone();
+        initialHeights = new long[sites.length];
+        heightMoments = new OnlineMoments[sites.length];
+        currentMoments = new OnlineMoments[sites.length];
+        heightQuantiles = new QuantileSketch[sites.length];
+        currentQuantiles = new QuantileSketch[sites.length];
+        for (int k = 0; k < sites.length; k++) {
+            heightMoments[k] = new OnlineMoments();
+            currentMoments[k] = new OnlineMoments();
+            heightQuantiles[k] = new QuantileSketch();
+            currentQuantiles[k] = new QuantileSketch();
+        }
+    }
+
+    @Override
+    public void initialized(TASEPModel model) {
+        for (int k = 0; k < sites.length; k++) {
+            initialHeights[k] = model.getHeight(sites[k]);
+        }
+    }
+
+    @Override
+    public void updated(TASEPModel model) {
+        for (int k = 0; k < sites.length; k++) {
+            long height = model.getHeight(sites[k]);
+            // Each jump through the site increases the height by two.
+            long current = (height - initialHeights[k]) / 2;
+            heightMoments[k].add(height);
+            heightQuantiles[k].add(height);
+            currentMoments[k].add(current);
+            currentQuantiles[k].add(current);
+        }
+    }
+
+    /**
+     * Forgets all recorded values.
+     */
+    public void clear() {
+        for (int k = 0; k < sites.length; k++) {
+            heightMoments[k].clear();
+            heightQuantiles[k].clear();
+            currentMoments[k].clear();
+            currentQuantiles[k].clear();
+        }
+    }
+
+    public int[] getSites() {
+        return sites.clone();
+    }
+
+    /**
+     * Returns the moments of the height at the site with the given number in the list of sites.
+     */
+    public OnlineMoments getHeightMoments(int siteNumber) {
+        return heightMoments[siteNumber];
+    }
+
+    public QuantileSketch getHeightQuantiles(int siteNumber) {
+        return heightQuantiles[siteNumber];
+    }
+
+    /**
+     * Returns the moments of the number of particles which jumped from the site with the given number
+     * in the list of sites.
+     */
+    public OnlineMoments getCurrentMoments(int siteNumber) {
+        return currentMoments[siteNumber];
+    }
+
+    public QuantileSketch getCurrentQuantiles(int siteNumber) {
+        return currentQuantiles[siteNumber];
+    }
+}
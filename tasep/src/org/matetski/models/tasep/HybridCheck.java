@@ -0,0 +1,107 @@
+package org.matetski.models.tasep;
+
+import org.matetski.utils.ModelUtils;
+
+import java.awt.*;
+import java.util.HashMap;
+
+import static org.matetski.models.tasep.TASEPUtils.*;
+
+/**
+ * A check that {@link HybridTASEP} reproduces the heights of the exact simulation by {@link TASEPModel} inside
+ * its window. Both are run from the same initial data for several seeds, and the mean heights at a few sites
+ * of the window are compared at the end. The program exits with a non-zero status if a difference exceeds
+ * {@link #MAX_STANDARD_ERRORS} standard errors of the difference of the means, or a half of a site, whichever is
+ * larger, since the hydrodynamic regions bring a small bias at the borders of the window.
+ *
+ * @author K.Matetski
+ */
+public final class HybridCheck {
+
+    private static final double MAX_STANDARD_ERRORS = 4;
+
+    private static final int CELL_SIZE = 10;
+
+    /**
+     * The number of sites beyond the distance travelled with the largest characteristic speed, where the hydrodynamic
+     * regions and the exact system still keep the initial density.
+     */
+    private static final int MARGIN = 100;
+
+    private HybridCheck() {
+    }
+
+    /**
+     * Runs the check. The optional arguments are the initial data ({@code FLAT}, {@code HALF_FLAT} or {@code STEP}),
+     * the model time and the number of seeds.
+     */
+    public static void main(String[] args) {
+        InitialData initialData = args.length > 0 ? InitialData.valueOf(args[0]) : InitialData.STEP;
+        double modelTime = args.length > 1 ? Double.parseDouble(args[1]) : 400;
+        int seeds = args.length > 2 ? Integer.parseInt(args[2]) : 50;
+        double jumpRate = DEFAULT_JUMP_RATE;
+
+        // The window covers a half of the region reached by the characteristics, the cells cover the rest.
+        int reach = (int) Math.ceil(jumpRate * modelTime) + MARGIN;
+        int halfWindow = reach / 2;
+        int cells = (reach - halfWindow + CELL_SIZE - 1) / CELL_SIZE;
+        long[] sites = {-halfWindow / 2, 0, halfWindow / 2};
+
+        double[] exactSum = new double[sites.length], exactSquares = new double[sites.length];
+        double[] hybridSum = new double[sites.length], hybridSquares = new double[sites.length];
+        long exactNanos = 0, hybridNanos = 0;
+        for (long seed = 1; seed <= seeds; seed++) {
+            long start = System.nanoTime();
+            TASEPModel model = createModel(initialData, jumpRate, 2 * reach, seed);
+            model.advance(modelTime);
+            long middle = System.nanoTime();
+            HybridTASEP hybrid = new HybridTASEP(initialData, jumpRate, -halfWindow, 2 * halfWindow, CELL_SIZE,
+                    cells, cells, seed);
+            hybrid.advance(modelTime);
+            long end = System.nanoTime();
+            exactNanos += middle - start;
+            hybridNanos += end - middle;
+            for (int k = 0; k < sites.length; k++) {
+                double exact = model.getHeight(sites[k]), approximate = hybrid.getHeight(sites[k]);
+                exactSum[k] += exact;
+                exactSquares[k] += exact * exact;
+                hybridSum[k] += approximate;
+                hybridSquares[k] += approximate * approximate;
+            }
+        }
+
+        boolean failed = false;
+        for (int k = 0; k < sites.length; k++) {
+            double exactMean = exactSum[k] / seeds, hybridMean = hybridSum[k] / seeds;
+            double exactVariance = (exactSquares[k] - seeds * exactMean * exactMean) / Math.max(1, seeds - 1);
+            double hybridVariance = (hybridSquares[k] - seeds * hybridMean * hybridMean) / Math.max(1, seeds - 1);
+            double standardError = Math.sqrt((exactVariance + hybridVariance) / seeds);
+            double tolerance = Math.max(MAX_STANDARD_ERRORS * standardError, 0.5);
+            boolean consistent = Math.abs(exactMean - hybridMean) <= tolerance;
+            System.out.println("h(" + sites[k] + "): exact " + exactMean + ", hybrid " + hybridMean
+                    + ", tolerance " + tolerance + (consistent ? "" : " FAILED"));
+            failed |= !consistent;
+        }
+        System.out.println("Time: exact " + exactNanos / 1_000_000 + " ms, hybrid " + hybridNanos / 1_000_000 + " ms");
+        if (failed) {
+            System.err.println("The hybrid heights differ from the exact ones");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Creates the exact system with the particles at least on the given number of sites around the origin.
+     */
+    private static TASEPModel createModel(InitialData initialData, double jumpRate, int sites, long seed) {
+        TASEPModel model = new TASEPModel();
+        HashMap<String, Object> parameters = model.getDefaultParameters();
+        parameters.put(INITIAL_DATA_PARAMETER, initialData);
+        parameters.put(JUMP_RATE_PARAMETER, jumpRate);
+        parameters.put(PARTICLE_SIZE_PARAMETER, 1.0);
+        parameters.put(SEED_PARAMETER, seed);
+        parameters.put(ModelUtils.SIZE_PARAMETER, new Dimension(4 * sites, 0));
+        model.initialize();
+        model.setParameters(parameters);
+        return model;
+    }
+}
@@ -0,0 +1,302 @@
+package org.matetski.models.tasep;
+
+import org.matetski.utils.BlockVariates;
+
+import static org.matetski.models.tasep.TASEPUtils.*;
+
+/**
+ * The TASEP on a large part of the lattice, where only a window is simulated particle by particle. To the left and
+ * to the right of the window the density of particles follows the Burgers equation
+ * {@code d/dt rho + d/dx (jumpRate rho (1 - rho)) = 0}, which is solved by the Godunov scheme on cells of several
+ * sites. The two descriptions are coupled at the borders of the window through the flux: a particle enters the window
+ * from the left cell with the rate given by the density of the cell and its mass is taken from the cell, a particle
+ * leaving the window adds its mass to the right cell. Hence the number of particles is conserved exactly, and the cost
+ * of a unit of time is close to the cost of the window alone.
+ *
+ * @author K.Matetski
+ */
+public final class HybridTASEP {
+
+    private final double jumpRate;
+
+    /**
+     * The left most site and the number of sites of the window.
+     */
+    private final long windowLeft;
+
+    private final int windowWidth;
+
+    private final int cellSize;
+
+    /**
+     * The occupation variables in the window.
+     */
+    private final byte[] occupation;
+
+    /**
+     * The densities in the cells to the left of the window, from left to right, and to the right of the window.
+     */
+    private final double[] leftDensities, rightDensities;
+
+    /**
+     * The densities outside of the domain, which stay equal to the initial ones.
+     */
+    private final double outerLeftDensity, outerRightDensity;
+
+    /**
+     * The height to the left of the domain, it grows by two with each particle entering the domain.
+     */
+    private double outerLeftHeight;
+
+    private final BlockVariates variates;
+
+    private double modelTime = 0;
+
+    /**
+     * Creates the system with the given initial data.
+     *
+     * @param initialData the initial data, the flat initial data occupies the even sites.
+     * @param jumpRate    the jump rate of the particles.
+     * @param windowLeft  the left most site of the window with particles.
+     * @param windowWidth the number of sites in the window.
+     * @param cellSize    the number of sites in a cell of the hydrodynamic regions.
+     * @param leftCells   the number of cells to the left of the window.
+     * @param rightCells  the number of cells to the right of the window.
+     * @param seed        the seed of the random evolution in the window.
+     */
+    public HybridTASEP(InitialData initialData, double jumpRate, long windowLeft, int windowWidth, int cellSize,
+                       int leftCells, int rightCells, long seed) {
+        this.jumpRate = jumpRate;
+        this.windowLeft = windowLeft;
+        this.windowWidth = windowWidth;
+        this.cellSize = cellSize;
+        occupation = new byte[windowWidth];
+        leftDensities = new double[leftCells];
+        rightDensities = new double[rightCells];
+        variates = new BlockVariates(seed, VARIATES_BLOCK_SIZE);
+        variates.setBound(windowWidth + 1);
+
+        // The initial data has one density at the non-positive sites and another one at the positive sites.
+        double negativeDensity = getInitialDensity(initialData, true),
+                positiveDensity = getInitialDensity(initialData, false);
+        long domainLeft = windowLeft - (long) leftCells * cellSize;
+        for (int k = 0; k < windowWidth; k++) {
+            occupation[k] = isInitiallyOccupied(initialData, windowLeft + k) ? (byte) 1 : 0;
+        }
+        for (int k = 0; k < leftCells; k++) {
+            long negativeSites = Math.max(0, Math.min(cellSize, 1 - (domainLeft + (long) k * cellSize)));
+            leftDensities[k] = (negativeSites * negativeDensity + (cellSize - negativeSites) * positiveDensity)
+                    / cellSize;
+        }
+        for (int k = 0; k < rightCells; k++) {
+            long negativeSites = Math.max(0, Math.min(cellSize, 1 - (windowLeft + windowWidth + (long) k * cellSize)));
+            rightDensities[k] = (negativeSites * negativeDensity + (cellSize - negativeSites) * positiveDensity)
+                    / cellSize;
+        }
+        outerLeftDensity = domainLeft - 1 <= 0 ? negativeDensity : positiveDensity;
+        outerRightDensity = getRightSite() + 1 <= 0 ? negativeDensity : positiveDensity;
+
+        // The height vanishes at the origin and grows by one to the right of an empty site, as in TASEPModel.
+        // On the alternating profile of density one half it is one at the odd sites and zero at the even ones.
+        long site = domainLeft - 1;
+        double density = site <= 0 ? negativeDensity : positiveDensity;
+        outerLeftHeight = site * (1 - 2 * density) + (density == 0.5 && (site & 1) != 0 ? 1 : 0);
+    }
+
+    private static boolean isInitiallyOccupied(InitialData initialData, long site) {
+        switch (initialData) {
+            case FLAT:
+                return (site & 1) == 0;
+            case HALF_FLAT:
+                return site <= 0 && (site & 1) == 0;
+            case STEP:
+                return site <= 0;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Returns the density of the initial data at the non-positive or at the positive sites.
+     */
+    private static double getInitialDensity(InitialData initialData, boolean negative) {
+        switch (initialData) {
+            case FLAT:
+                return 0.5;
+            case HALF_FLAT:
+                return negative ? 0.5 : 0;
+            case STEP:
+                return negative ? 1 : 0;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Lets the system evolve during the given time.
+     */
+    public void advance(double duration) {
+        // The characteristic speeds are at most jumpRate, so the step satisfies the CFL condition.
+        double maxStep = HYBRID_COURANT_NUMBER * cellSize / jumpRate;
+        double end = modelTime + duration;
+        while (modelTime < end) {
+            double step = Math.min(maxStep, end - modelTime);
+            evolveHydrodynamics(step);
+            evolveWindow(step);
+            modelTime += step;
+        }
+    }
+
+    /**
+     * Makes a step of the Godunov scheme in both regions. The fluxes through the borders of the window
+     * are produced by the particles in {@link #evolveWindow(double)}.
+     */
+    private void evolveHydrodynamics(double step) {
+        double ratio = step / cellSize;
+        double inflow = flux(outerLeftDensity, leftDensities.length > 0 ? leftDensities[0] : outerLeftDensity);
+        outerLeftHeight += 2 * inflow * step;
+        for (int k = 0; k < leftDensities.length; k++) {
+            double outflow = k + 1 < leftDensities.length ? flux(leftDensities[k], leftDensities[k + 1]) : 0;
+            leftDensities[k] += ratio * (inflow - outflow);
+            inflow = outflow;
+        }
+        inflow = 0;
+        for (int k = 0; k < rightDensities.length; k++) {
+            double outflow = flux(rightDensities[k], k + 1 < rightDensities.length
+                    ? rightDensities[k + 1] : outerRightDensity);
+            rightDensities[k] += ratio * (inflow - outflow);
+            inflow = outflow;
+        }
+    }
+
+    /**
+     * Returns the Godunov flux between cells with the given densities. The flux function is concave with the maximum
+     * at the density one half.
+     */
+    private double flux(double leftDensity, double rightDensity) {
+        double density;
+        if (leftDensity <= rightDensity) {
+            density = leftDensity + rightDensity <= 1 ? leftDensity : rightDensity;
+        } else if (rightDensity <= 0.5 && leftDensity >= 0.5) {
+            density = 0.5;
+        } else {
+            density = leftDensity < 0.5 ? leftDensity : rightDensity;
+        }
+        return jumpRate * density * (1 - density);
+    }
+
+    /**
+     * Runs the particles in the window. Each of the {@code windowWidth + 1} bonds, including the two bonds
+     * to the neighbouring cells, carries a clock of rate {@code jumpRate}. A particle enters from the left cell
+     * with the probability equal to its density and leaves into the right cell with the probability equal to
+     * the density of holes there; only whole particles are moved between the cell and the window.
+     */
+    private void evolveWindow(double step) {
+        double mass = 1.0 / cellSize;
+        boolean leftCell = leftDensities.length > 0, rightCell = rightDensities.length > 0;
+        double meanWaitingTime = 1 / (jumpRate * (windowWidth + 1));
+        double localTime = variates.nextExponential() * meanWaitingTime;
+        while (localTime <= step) {
+            int bond = (int) variates.nextInteger();
+            if (bond == 0) {
+                if (leftCell && occupation[0] == 0 && leftDensities[leftDensities.length - 1] >= mass
+                        && variates.nextUniform() <= leftDensities[leftDensities.length - 1]) {
+                    occupation[0] = 1;
+                    leftDensities[leftDensities.length - 1] -= mass;
+                }
+            } else if (bond == windowWidth) {
+                if (rightCell && occupation[windowWidth - 1] == 1 && rightDensities[0] <= 1 - mass
+                        && variates.nextUniform() <= 1 - rightDensities[0]) {
+                    occupation[windowWidth - 1] = 0;
+                    rightDensities[0] += mass;
+                }
+            } else if (occupation[bond - 1] == 1 && occupation[bond] == 0) {
+                occupation[bond - 1] = 0;
+                occupation[bond] = 1;
+            }
+            localTime += variates.nextExponential() * meanWaitingTime;
+        }
+    }
+
+    public double getModelTime() {
+        return modelTime;
+    }
+
+    public long getWindowLeft() {
+        return windowLeft;
+    }
+
+    public int getWindowWidth() {
+        return windowWidth;
+    }
+
+    /**
+     * Returns the left most site of the domain.
+     */
+    public long getLeftSite() {
+        return windowLeft - (long) leftDensities.length * cellSize;
+    }
+
+    /**
+     * Returns the right most site of the domain.
+     */
+    public long getRightSite() {
+        return windowLeft + windowWidth + (long) rightDensities.length * cellSize - 1;
+    }
+
+    /**
+     * Returns the occupation variable of a site in the window.
+     *
+     * @throws IllegalArgumentException if the site is outside of the window.
+     */
+    public boolean isOccupied(long site) {
+        if (site < windowLeft || site >= windowLeft + windowWidth) {
+            throw new IllegalArgumentException("The site " + site + " is outside of the window from " + windowLeft
+                    + " to " + (windowLeft + windowWidth - 1));
+        }
+        return occupation[(int) (site - windowLeft)] == 1;
+    }
+
+    /**
+     * Returns the density at the given site, i.e. the occupation variable in the window, the density of the cell
+     * in the hydrodynamic regions or the initial density outside of the domain.
+     */
+    public double getDensity(long site) {
+        if (site < getLeftSite()) {
+            return outerLeftDensity;
+        } else if (site > getRightSite()) {
+            return outerRightDensity;
+        } else if (site < windowLeft) {
+            return leftDensities[(int) ((site - getLeftSite()) / cellSize)];
+        } else if (site < windowLeft + windowWidth) {
+            return occupation[(int) (site - windowLeft)];
+        } else {
+            return rightDensities[(int) ((site - windowLeft - windowWidth) / cellSize)];
+        }
+    }
+
+    /**
+     * Returns the height of the interface above the given site of the domain, normalized as in {@link TASEPModel}.
+     * The height is exact inside the window, up to the fluctuations of the hydrodynamic regions,
+     * and is the solution of the Burgers equation outside.
+     */
+    public double getHeight(long site) {
+        double height = outerLeftHeight;
+        long current = getLeftSite();
+        // The height grows by one to the right of an empty site and decreases by one to the right of a particle.
+        for (int k = 0; k < leftDensities.length && current <= site; k++) {
+            long sites = Math.min(cellSize, site - current + 1);
+            height += sites * (1 - 2 * leftDensities[k]);
+            current += sites;
+        }
+        for (int k = 0; k < windowWidth && current <= site; k++, current++) {
+            height += 1 - 2 * occupation[k];
+        }
+        for (int k = 0; k < rightDensities.length && current <= site; k++) {
+            long sites = Math.min(cellSize, site - current + 1);
+            height += sites * (1 - 2 * rightDensities[k]);
+            current += sites;
+        }
+        return height;
+    }
+}
@@ -22,14 +22,40 @@ public enum InitialData {
         return name;
     }
 
-    public int getInitialPosition(int particlesNumber, int index) {
+    /**
+     * Returns the initial position of a particle, the positions are stored as {@code int}, so the number of
+     * particles should not exceed {@link #getMaxParticlesNumber()}.
+     *
+     * @param particlesNumber the number of particles.
+     * @param index           the index of the particle, starting from 0 for the rightmost one.
+     */
+    public int getInitialPosition(long particlesNumber, long index) {
         switch (this) {
             case FLAT:
-                return particlesNumber - 2 * index;
+                return (int) (particlesNumber - 2 * index);
             case HALF_FLAT:
-                return -2 * index;
+                return (int) (-2 * index);
             case STEP:
-                return -index;
+                return (int) -index;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Returns the largest number of particles whose initial positions fit in {@code int}: the flat data occupies
+     * the sites from {@code 2 - particlesNumber} to {@code particlesNumber}, the half flat one from
+     * {@code 2 - 2 * particlesNumber} to 0 and the step one from {@code 1 - particlesNumber} to 0.
+     * The particles move to the right during the evolution, so the rightmost ones need some room above it.
+     */
+    public long getMaxParticlesNumber() {
+        switch (this) {
+            case FLAT:
+                return Integer.MAX_VALUE;
+            case HALF_FLAT:
+                return (1L << 30) + 1;
+            case STEP:
+                return (1L << 31) + 1;
             default:
                 return 0;
         }
@@ -0,0 +1,223 @@
+package org.matetski.models.tasep;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Computes the TASEP with step initial data at given times through last passage percolation, without simulating
+ * every jump. If {@code G(i, k)} is the time of the {@code i}-th jump of the particle {@code k}, then
+ * {@code G(i, k) = max(G(i - 1, k), G(i, k - 1)) + w(i, k)} with independent exponential weights {@code w}.
+ * The values are computed along anti-diagonals {@code i + k = const}, which are split between the cores.
+ * Only one diagonal is kept in memory, the weights are generated from the seed and the cell, so that the result
+ * does not depend on the number of threads.
+ *
+ * @author K.Matetski
+ */
+public final class LastPassagePercolation {
+
+    /**
+     * The smallest part of a diagonal which is given to a separate thread.
+     */
+    private static final int PARALLEL_THRESHOLD = 1 << 12;
+
+    private final int particlesNumber;
+
+    private final double jumpRate;
+
+    private final long seed;
+
+    /**
+     * The times at which the particles are computed, in increasing order.
+     */
+    private final double[] times;
+
+    /**
+     * The largest number of jumps of a particle which is computed.
+     */
+    private final long maxJumps;
+
+    /**
+     * The positions of the particles at each of the times.
+     */
+    private final ParticleStorage[] particles;
+
+    /**
+     * The last passage times on the current diagonal, indexed by the number of the particle.
+     */
+    private double[] diagonal;
+
+    /**
+     * Creates the engine for the given number of right most particles, which start at the sites 0, -1, -2, ...
+     *
+     * @param particlesNumber the number of particles.
+     * @param jumpRate        the jump rate of the particles.
+     * @param seed            the seed of the random weights.
+     * @param times           the times at which the particles are computed, non-negative and in increasing order.
+     * @throws IllegalArgumentException if there are no particles or no times, or the times are not as above.
+     */
+    public LastPassagePercolation(int particlesNumber, double jumpRate, long seed, double... times) {
+        if (particlesNumber <= 0) {
+            throw new IllegalArgumentException("The number of particles should be positive: " + particlesNumber);
+        }
+        if (times.length == 0) {
+            throw new IllegalArgumentException("At least one time is needed");
+        }
+        for (int time = 0; time < times.length; time++) {
+            // The times are swept from the last one down in computeCells.
+            if (!(times[time] >= 0) || time > 0 && times[time] < times[time - 1]) {
+                throw new IllegalArgumentException("The times should be non-negative and increasing: "
+                        + Arrays.toString(times));
+            }
+        }
+        this.particlesNumber = particlesNumber;
+        this.jumpRate = jumpRate;
+        this.seed = seed;
+        this.times = times.clone();
+        // The right most particle makes a Poisson number of jumps, which is far below this bound.
+        double meanJumps = jumpRate * this.times[this.times.length - 1];
+        maxJumps = (long) Math.ceil(meanJumps + 10 * Math.sqrt(meanJumps) + 10);
+        particles = new ParticleStorage[times.length];
+        for (int time = 0; time < times.length; time++) {
+            particles[time] = ParticleStorage.allocate(particlesNumber, null);
+            for (int k = 0; k < particlesNumber; k++) {
+                particles[time].set(k, InitialData.STEP.getInitialPosition(particlesNumber, k));
+            }
+        }
+    }
+
+    /**
+     * Computes the positions of the particles, using all available cores.
+     */
+    public void compute() {
+        compute(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Computes the positions of the particles, using the given number of threads.
+     */
+    public void compute(int threadsNumber) {
+        diagonal = new double[particlesNumber];
+        ForkJoinPool pool = threadsNumber > 1 ? new ForkJoinPool(threadsNumber) : null;
+        try {
+            for (long sum = 1; sum < maxJumps + particlesNumber; sum++) {
+                int from = (int) Math.max(0, sum - maxJumps),
+                        to = (int) Math.min(particlesNumber - 1, sum - 1);
+                if (pool == null || to - from < 2 * PARALLEL_THRESHOLD) {
+                    computeCells(sum, from, to, from > 0 ? diagonal[from - 1] : 0);
+                } else {
+                    pool.invoke(new DiagonalTask(sum, from, to, threadsNumber));
+                }
+            }
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+            diagonal = null;
+        }
+        for (int time = 0; time < times.length; time++) {
+            if (particles[time].get(0) >= maxJumps) {
+                throw new IllegalStateException("The right most particle made more than " + maxJumps + " jumps");
+            }
+        }
+    }
+
+    /**
+     * Computes the cells {@code (sum - k, k)} for {@code from <= k <= to} on the diagonal. The diagonal is updated
+     * in place from right to left, so that the values on the previous diagonal are read before they are replaced.
+     *
+     * @param leftValue the value of the cell {@code k = from - 1} on the previous diagonal.
+     */
+    private void computeCells(long sum, int from, int to, double leftValue) {
+        for (int k = to; k >= from; k--) {
+            long jumps = sum - k;
+            double previous = k > from ? diagonal[k - 1] : (k > 0 ? leftValue : 0);
+            double value = Math.max(diagonal[k], previous) + weight(jumps, k);
+            diagonal[k] = value;
+            for (int time = times.length - 1; time >= 0 && times[time] >= value; time--) {
+                particles[time].set(k, (int) (jumps - k));
+            }
+        }
+    }
+
+    /**
+     * Returns the exponential waiting time for the given cell, generated by hashing the seed and the cell.
+     */
+    private double weight(long jumps, int particle) {
+        long hash = mix(seed ^ mix(jumps * 0x9E3779B97F4A7C15L + particle));
+        // The uniform variable in (0, 1] from the upper 53 bits.
+        double uniform = ((hash >>> 11) + 1) * 0x1.0p-53;
+        return -Math.log(uniform) / jumpRate;
+    }
+
+    /**
+     * The finalizer of the SplitMix64 generator.
+     */
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+        return value ^ (value >>> 31);
+    }
+
+    public int getTimesNumber() {
+        return times.length;
+    }
+
+    public double getTime(int timeIndex) {
+        return times[timeIndex];
+    }
+
+    /**
+     * Returns the positions of the particles at the time with the given number, ordered as in {@link TASEPModel}.
+     */
+    public ParticleStorage getParticles(int timeIndex) {
+        return particles[timeIndex];
+    }
+
+    /**
+     * Returns the height of the interface above the given site at the time with the given number, as
+     * {@link TASEPModel#getHeight(long)} does. The height is exact to the right of the left most computed particle.
+     */
+    public long getHeight(int timeIndex, long site) {
+        return 2 * particles[timeIndex].countRightOf(site) + site;
+    }
+
+    /**
+     * Splits a diagonal between several threads. The values to the left of each part are read
+     * before any part is updated.
+     */
+    private final class DiagonalTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long sum;
+
+        private final int from, to, partsNumber;
+
+        DiagonalTask(long sum, int from, int to, int partsNumber) {
+            this.sum = sum;
+            this.from = from;
+            this.to = to;
+            this.partsNumber = partsNumber;
+        }
+
+        @Override
+        protected void compute() {
+            int partLength = Math.max(PARALLEL_THRESHOLD, (to - from + partsNumber) / partsNumber);
+            int count = (to - from + partLength) / partLength;
+            RecursiveAction[] parts = new RecursiveAction[count];
+            for (int part = 0; part < count; part++) {
+                int partFrom = from + part * partLength,
+                        partTo = Math.min(to, partFrom + partLength - 1);
+                double leftValue = partFrom > 0 ? diagonal[partFrom - 1] : 0;
+                parts[part] = new RecursiveAction() {
+                    @Override
+                    protected void compute() {
+                        computeCells(sum, partFrom, partTo, leftValue);
+                    }
+                };
+            }
+            invokeAll(parts);
+        }
+    }
+}
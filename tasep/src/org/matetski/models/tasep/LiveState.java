@@ -0,0 +1,130 @@
+package org.matetski.models.tasep;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * The state of the model published in a memory-mapped file, which can be read by other processes with
+ * a {@link LiveStateReader}. The file starts with a header of {@link #HEADER_SIZE} bytes, containing a magic number,
+ * a sequence counter, the model time and the number of particles, followed by the positions of the particles.
+ * All values are in the native byte order. The positions are not copied to the file, the particles of the model
+ * are stored there.
+ * <p>
+ * The consistency is provided by a sequence lock: the counter is odd while the state is being changed and even
+ * otherwise, so that a reader which sees the same even value before and after copying the state has got
+ * a consistent snapshot. The writer pays only for two stores of the counter and two fences per update.
+ * <p>
+ * The mapped memory is not covered by the Java memory model, so the order of the accesses is enforced by fences:
+ * a store to a volatile field is compiled by HotSpot into a store followed by a full fence, and a load from it
+ * into a load which the following loads cannot pass.
+ *
+ * @author K.Matetski
+ */
+final class LiveState {
+
+    /**
+     * The magic number at the beginning of the file, the bytes of "TASEPLIV".
+     */
+    static final long MAGIC = 0x54415345504C4956L;
+
+    /**
+     * The offsets of the values in the header.
+     */
+    static final int MAGIC_OFFSET = 0, SEQUENCE_OFFSET = 8, TIME_OFFSET = 16, SIZE_OFFSET = 24;
+
+    /**
+     * The size of the header, one cache line.
+     */
+    static final int HEADER_SIZE = 64;
+
+    /**
+     * The field whose accesses serve as fences.
+     */
+    private static volatile int fence;
+
+    private final File file;
+
+    private final MappedByteBuffer header;
+
+    private long sequence;
+
+    /**
+     * Opens the file for publishing. If the file was already used, the counter continues from its value,
+     * so that the readers never see the same value for different states. The counter stays odd until
+     * the first {@link #endWrite(double, long)}, since the header and the particles are not written yet.
+     *
+     * @param file the file where the state is published.
+     */
+    LiveState(File file) throws IOException {
+        this.file = file;
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            header = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+        }
+        header.order(ByteOrder.nativeOrder());
+        if (header.getLong(MAGIC_OFFSET) == MAGIC) {
+            // The previous writer could have stopped in the middle of an update, then the counter is already odd.
+            sequence = header.getLong(SEQUENCE_OFFSET) | 1;
+        } else {
+            sequence = 1;
+        }
+        header.putLong(SEQUENCE_OFFSET, sequence);
+        fullFence();
+        header.putLong(MAGIC_OFFSET, MAGIC);
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    /**
+     * Allocates the particles in the file, after the header. The file never shrinks, so that the mappings
+     * of the readers stay valid. The new number of particles is published by the next {@link #endWrite(double, long)}.
+     *
+     * @param size the number of particles.
+     * @return the storage of the particles.
+     */
+    ParticleStorage allocate(long size) throws IOException {
+        return new OffHeapParticleStorage(size, file, HEADER_SIZE);
+    }
+
+    /**
+     * Marks the beginning of a change of the state, the following stores cannot be seen before the mark.
+     */
+    void beginWrite() {
+        if ((sequence & 1) == 0) {
+            header.putLong(SEQUENCE_OFFSET, ++sequence);
+            fullFence();
+        }
+    }
+
+    /**
+     * Publishes the model time and the number of particles, and marks the end of a change of the state.
+     *
+     * @param modelTime the model time.
+     * @param size      the number of particles.
+     */
+    void endWrite(double modelTime, long size) {
+        header.putDouble(TIME_OFFSET, modelTime);
+        header.putLong(SIZE_OFFSET, size);
+        fullFence();
+        header.putLong(SEQUENCE_OFFSET, ++sequence);
+    }
+
+    /**
+     * Keeps all loads and stores before the fence from passing the ones after it.
+     */
+    static void fullFence() {
+        fence = 0;
+    }
+
+    /**
+     * Keeps the loads after the fence from passing the loads before it.
+     */
+    static int acquireFence() {
+        return fence;
+    }
+}
@@ -0,0 +1,159 @@
+package org.matetski.models.tasep;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.matetski.models.tasep.TASEPUtils.LIVE_STATE_RETRY_NANOS;
+
+/**
+ * Takes consistent snapshots of the state of a running model, published in a file by the model
+ * with the parameter {@link TASEPUtils#LIVE_STATE_FILE_PARAMETER}. The reader can live in another process
+ * and never blocks the model: it copies the positions and the model time between two reads of the sequence
+ * counter, and repeats the copy if the counter has changed. The snapshots are the states at the ends
+ * of the calls of {@link TASEPModel#advance(double)}.
+ *
+ * @author K.Matetski
+ */
+public final class LiveStateReader implements AutoCloseable {
+
+    /**
+     * The binary logarithm of the number of positions in one mapped chunk.
+     */
+    private static final int CHUNK_SHIFT = 27;
+
+    private static final long CHUNK_MASK = (1L << CHUNK_SHIFT) - 1;
+
+    private final RandomAccessFile randomAccessFile;
+
+    private final MappedByteBuffer header;
+
+    /**
+     * The mapped positions, they are remapped when the number of particles grows.
+     */
+    private IntBuffer[] chunks = new IntBuffer[0];
+
+    private long mappedSize;
+
+    /**
+     * The values of the last snapshot.
+     */
+    private long sequence, particlesNumber;
+
+    private double modelTime;
+
+    /**
+     * The number of copies which were repeated because the state was changing.
+     */
+    private long retries;
+
+    /**
+     * Opens the file published by a model.
+     *
+     * @param file the file with the state.
+     */
+    public LiveStateReader(File file) throws IOException {
+        randomAccessFile = new RandomAccessFile(file, "r");
+        header = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, LiveState.HEADER_SIZE);
+        header.order(ByteOrder.nativeOrder());
+        if (header.getLong(LiveState.MAGIC_OFFSET) != LiveState.MAGIC) {
+            randomAccessFile.close();
+            throw new IOException("Not a live state of the model: " + file);
+        }
+    }
+
+    /**
+     * Copies the positions of the particles with consecutive numbers, starting from the right most particle
+     * with the given number, together with the model time. Waits while the model is in the middle of an update.
+     *
+     * @param fromIndex the number of the first particle.
+     * @param positions the array where the positions are written.
+     * @return the number of copied positions, smaller than the length of the array
+     * if there are not enough particles.
+     */
+    public int snapshot(long fromIndex, int[] positions) throws IOException {
+        while (true) {
+            long before = header.getLong(LiveState.SEQUENCE_OFFSET);
+            LiveState.acquireFence();
+            if ((before & 1) == 0) {
+                double time = header.getDouble(LiveState.TIME_OFFSET);
+                long size = header.getLong(LiveState.SIZE_OFFSET);
+                if (size > mappedSize) {
+                    map(size);
+                }
+                int count = (int) Math.max(0, Math.min(positions.length, size - fromIndex));
+                copy(fromIndex, positions, count);
+                // The copied positions should be read before the counter is checked again.
+                LiveState.fullFence();
+                if (header.getLong(LiveState.SEQUENCE_OFFSET) == before) {
+                    sequence = before;
+                    modelTime = time;
+                    particlesNumber = size;
+                    return count;
+                }
+            }
+            retries++;
+            LockSupport.parkNanos(LIVE_STATE_RETRY_NANOS);
+        }
+    }
+
+    /**
+     * Copies the positions, which can change during the copy.
+     */
+    private void copy(long fromIndex, int[] positions, int count) {
+        int copied = 0;
+        while (copied < count) {
+            long index = fromIndex + copied;
+            IntBuffer chunk = chunks[(int) (index >>> CHUNK_SHIFT)];
+            int offset = (int) (index & CHUNK_MASK);
+            int length = Math.min(count - copied, chunk.limit() - offset);
+            chunk.position(offset);
+            chunk.get(positions, copied, length);
+            copied += length;
+        }
+    }
+
+    /**
+     * Maps the positions of the given number of particles, the file is at least as long because it never shrinks.
+     */
+    private void map(long size) throws IOException {
+        FileChannel channel = randomAccessFile.getChannel();
+        chunks = new IntBuffer[(int) ((size + CHUNK_MASK) >>> CHUNK_SHIFT)];
+        for (int k = 0; k < chunks.length; k++) {
+            long first = (long) k << CHUNK_SHIFT;
+            int bytes = 4 * (int) Math.min(1L << CHUNK_SHIFT, size - first);
+            chunks[k] = channel.map(FileChannel.MapMode.READ_ONLY, LiveState.HEADER_SIZE + 4 * first, bytes)
+                    .order(ByteOrder.nativeOrder()).asIntBuffer();
+        }
+        mappedSize = size;
+    }
+
+    /**
+     * Returns the value of the sequence counter in the last snapshot, it grows with every update of the model.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public double getModelTime() {
+        return modelTime;
+    }
+
+    public long getParticlesNumber() {
+        return particlesNumber;
+    }
+
+    public long getRetries() {
+        return retries;
+    }
+
+    @Override
+    public void close() throws IOException {
+        randomAccessFile.close();
+    }
+}
@@ -0,0 +1,91 @@
+package org.matetski.models.tasep;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Particle positions stored outside of the heap, either in direct buffers or in a memory-mapped file.
+ * A single buffer cannot hold more than 2^31 bytes, so the positions are split into chunks
+ * of {@code 2^CHUNK_SHIFT} particles.
+ *
+ * @author K.Matetski
+ */
+final class OffHeapParticleStorage extends ParticleStorage {
+
+    /**
+     * The binary logarithm of the number of particles in one chunk.
+     */
+    private static final int CHUNK_SHIFT = 27;
+
+    private static final long CHUNK_MASK = (1L << CHUNK_SHIFT) - 1;
+
+    private final long size;
+
+    private final IntBuffer[] chunks;
+
+    /**
+     * Creates a storage for the given number of particles.
+     *
+     * @param size   the number of particles.
+     * @param file   the file to map the positions to, or {@code null} if direct buffers should be used.
+     * @param offset the offset in bytes in the file where the positions start.
+     */
+    OffHeapParticleStorage(long size, File file, long offset) throws IOException {
+        this.size = size;
+        chunks = new IntBuffer[(int) ((size + CHUNK_MASK) >>> CHUNK_SHIFT)];
+        if (file == null) {
+            for (int k = 0; k < chunks.length; k++) {
+                chunks[k] = ByteBuffer.allocateDirect(chunkBytes(k)).order(ByteOrder.nativeOrder()).asIntBuffer();
+            }
+        } else {
+            try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+                // The file never shrinks, the mappings of other processes would become invalid.
+                if (randomAccessFile.length() < offset + 4 * size) {
+                    randomAccessFile.setLength(offset + 4 * size);
+                }
+                // The mappings stay valid after the file is closed.
+                FileChannel channel = randomAccessFile.getChannel();
+                for (int k = 0; k < chunks.length; k++) {
+                    chunks[k] = channel.map(FileChannel.MapMode.READ_WRITE,
+                            offset + ((long) k << (CHUNK_SHIFT + 2)), chunkBytes(k))
+                            .order(ByteOrder.nativeOrder()).asIntBuffer();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of bytes in the chunk with the given number, the last chunk can be incomplete.
+     */
+    private int chunkBytes(int chunk) {
+        return 4 * (int) Math.min(1L << CHUNK_SHIFT, size - ((long) chunk << CHUNK_SHIFT));
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public int get(long index) {
+        return chunks[(int) (index >>> CHUNK_SHIFT)].get((int) (index & CHUNK_MASK));
+    }
+
+    @Override
+    public void set(long index, int position) {
+        chunks[(int) (index >>> CHUNK_SHIFT)].put((int) (index & CHUNK_MASK), position);
+    }
+
+    @Override
+    public void release() {
+        // Direct and mapped buffers are freed by the garbage collector once they are unreachable.
+        for (int k = 0; k < chunks.length; k++) {
+            chunks[k] = null;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package org.matetski.models.tasep;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Positions of the TASEP particles with 64-bit indexing. The 0th element is the right most particle.
+ * Small systems are kept in an {@code int[]} on the heap, large ones are stored off-heap.
+ *
+ * @author K.Matetski
+ */
+public abstract class ParticleStorage {
+
+    /**
+     * Returns the number of particles.
+     *
+     * @return the number of particles.
+     */
+    public abstract long size();
+
+    /**
+     * Returns the position of the particle with the given number.
+     *
+     * @param index number of a particle.
+     * @return the position of the particle.
+     */
+    public abstract int get(long index);
+
+    /**
+     * Sets the position of the particle with the given number.
+     *
+     * @param index    number of a particle.
+     * @param position the new position of the particle.
+     */
+    public abstract void set(long index, int position);
+
+    /**
+     * Moves the particle with the given number one step to the right.
+     *
+     * @param index number of a particle.
+     */
+    public void increment(long index) {
+        set(index, get(index) + 1);
+    }
+
+    /**
+     * Returns the number of particles at the sites to the right of the given one.
+     * The particles are ordered from right to left, so the number is found by a binary search.
+     *
+     * @param site the site on the lattice.
+     * @return the number of particles to the right of the site.
+     */
+    public long countRightOf(long site) {
+        long left = 0, right = size();
+        while (left < right) {
+            long middle = (left + right) >>> 1;
+            if (get(middle) > site) {
+                left = middle + 1;
+            } else {
+                right = middle;
+            }
+        }
+        return left;
+    }
+
+    /**
+     * Releases the resources held by the storage. The storage should not be used afterwards.
+     */
+    public void release() {
+    }
+
+    /**
+     * Allocates a storage for the given number of particles. If the number of particles exceeds
+     * {@link TASEPUtils#HEAP_STORAGE_LIMIT} or a file is given, the particles are stored off-heap.
+     *
+     * @param size the number of particles.
+     * @param file the file which should back the storage, or {@code null} if no file is needed.
+     * @return the allocated storage.
+     */
+    public static ParticleStorage allocate(long size, File file) {
+        if (file == null && size <= TASEPUtils.HEAP_STORAGE_LIMIT) {
+            return new HeapParticleStorage((int) size);
+        }
+        try {
+            return new OffHeapParticleStorage(size, file, 0);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot map the particles to " + file, e);
+        }
+    }
+}
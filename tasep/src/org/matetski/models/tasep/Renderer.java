@@ -0,0 +1,23 @@
+package org.matetski.models.tasep;
+
+/**
+ * The ways the model can be drawn on the canvas.
+ *
+ * @author K.Matetski
+ */
+public enum Renderer {
+    CANVAS("Canvas"),
+    PIXELS("Pixel buffer"),
+    BACKGROUND_PIXELS("Pixel buffer (background)");
+
+    private final String name;
+
+    Renderer(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,139 @@
+package org.matetski.models.tasep;
+
+import org.matetski.utils.BlockVariates;
+
+/**
+ * Independent replicas of a small TASEP, e.g. thousands of systems of {@code 10^3 - 10^4} particles
+ * for an ensemble, advanced together by one tight loop. The positions of all replicas are kept in one array,
+ * the particles of a replica are consecutive, so that the working set of the loop is one small replica and stays
+ * in the cache. The 0th particle of each replica is the right most one.
+ * <p>
+ * During a time interval the number of attempted jumps in a replica is a Poisson variable, and the attempts
+ * choose the particles uniformly and independently. So a replica needs one Poisson variable per interval
+ * and one random integer per attempt, instead of an exponential waiting time and an integer per attempt.
+ *
+ * @author K.Matetski
+ */
+public final class ReplicaTASEP {
+
+    private final InitialData initialData;
+
+    private final double jumpRate;
+
+    private final int particlesNumber;
+
+    private final int replicasNumber;
+
+    /**
+     * The position of the particle {@code i} of the replica {@code r} is at {@code r * particlesNumber + i}.
+     */
+    private final int[] positions;
+
+    private final BlockVariates variates;
+
+    private double modelTime = 0;
+
+    /**
+     * Creates the replicas at the initial configuration.
+     *
+     * @param initialData     the initial data of all replicas.
+     * @param jumpRate        the jump rate of the particles.
+     * @param particlesNumber the number of particles in a replica.
+     * @param replicasNumber  the number of replicas.
+     * @param seed            the seed of the evolution of all replicas.
+     */
+    public ReplicaTASEP(InitialData initialData, double jumpRate, int particlesNumber, int replicasNumber, long seed) {
+        if ((long) particlesNumber * replicasNumber > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many particles: " + particlesNumber + " x " + replicasNumber);
+        }
+        this.initialData = initialData;
+        this.jumpRate = jumpRate;
+        this.particlesNumber = particlesNumber;
+        this.replicasNumber = replicasNumber;
+        positions = new int[particlesNumber * replicasNumber];
+        for (int i = 0; i < particlesNumber; i++) {
+            positions[i] = initialData.getInitialPosition(particlesNumber, i);
+        }
+        for (int replica = 1; replica < replicasNumber; replica++) {
+            System.arraycopy(positions, 0, positions, replica * particlesNumber, particlesNumber);
+        }
+        variates = new BlockVariates(seed, TASEPUtils.VARIATES_BLOCK_SIZE);
+        variates.setBound(Math.max(1, particlesNumber));
+    }
+
+    /**
+     * Lets all replicas evolve during the given time.
+     *
+     * @param duration the time interval of the evolution.
+     */
+    public void advance(double duration) {
+        int[] positions = this.positions;
+        double meanAttempts = jumpRate * particlesNumber * duration;
+        for (int replica = 0; replica < replicasNumber; replica++) {
+            int first = replica * particlesNumber;
+            for (long attempts = variates.nextPoisson(meanAttempts); attempts > 0; attempts--) {
+                int particle = first + (int) variates.nextInteger();
+                if (particle == first || positions[particle - 1] - positions[particle] > 1) {
+                    positions[particle]++;
+                }
+            }
+        }
+        modelTime += duration;
+    }
+
+    public double getModelTime() {
+        return modelTime;
+    }
+
+    public int getParticlesNumber() {
+        return particlesNumber;
+    }
+
+    public int getReplicasNumber() {
+        return replicasNumber;
+    }
+
+    /**
+     * Returns the position of a particle in a replica.
+     *
+     * @param replica  the number of the replica.
+     * @param particle the number of the particle.
+     * @return the position of the particle.
+     */
+    public int getPosition(int replica, int particle) {
+        return positions[replica * particlesNumber + particle];
+    }
+
+    /**
+     * Returns the number of particles of a replica at the sites to the right of the given one.
+     *
+     * @param replica the number of the replica.
+     * @param site    the site on the lattice.
+     * @return the number of particles to the right of the site.
+     */
+    public int countParticlesRightOf(int replica, long site) {
+        int first = replica * particlesNumber;
+        int left = 0, right = particlesNumber;
+        while (left < right) {
+            int middle = (left + right) >>> 1;
+            if (positions[first + middle] > site) {
+                left = middle + 1;
+            } else {
+                right = middle;
+            }
+        }
+        return left;
+    }
+
+    /**
+     * Returns the height of the interface of a replica above the given site, as {@link TASEPModel#getHeight(long)}.
+     *
+     * @param replica the number of the replica.
+     * @param site    the site on the lattice.
+     * @return the height of the interface.
+     */
+    public long getHeight(int replica, long site) {
+        long centering = (initialData == InitialData.FLAT) ? particlesNumber : 0;
+        return 2L * countParticlesRightOf(replica, site) + site - centering;
+    }
+}
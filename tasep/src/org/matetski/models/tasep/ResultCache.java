@@ -0,0 +1,290 @@
+package org.matetski.models.tasep;
+
+import org.matetski.utils.ModelUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import static org.matetski.models.tasep.TASEPUtils.*;
+
+/**
+ * Keeps the results of runs of the model in a directory, so that a run with the same parameters, the same seed
+ * and the same model time is not computed again. An entry is a file named by the SHA-256 hash of the parameters
+ * and of the model time, which contains the observables given by the caller and the state of the model
+ * at the end of the run. The files are replaced atomically, so the directory can be shared by several processes.
+ * <p>
+ * The entries which were not used for the longest time are deleted when the total size of the files exceeds
+ * the budget. The time of the last use is the modification time of the file, so it survives restarts.
+ * Runs without a seed are random and are never cached.
+ *
+ * @author K.Matetski
+ */
+public final class ResultCache {
+
+    /**
+     * The version of the format of the entries, a new version makes the old entries unreachable.
+     */
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * The parameters which change the evolution of the model, the other ones only change how it is shown or stored.
+     */
+    private static final String[] KEY_PARAMETERS = {INITIAL_DATA_PARAMETER, JUMP_RATE_PARAMETER, DYNAMICS_PARAMETER,
+            LEFT_RATE_PARAMETER, ModelUtils.SIZE_PARAMETER, PARTICLE_SIZE_PARAMETER, SEED_PARAMETER};
+
+    private static final String SUFFIX = ".result";
+
+    private final File directory;
+
+    private final long budget;
+
+    /**
+     * The sizes of the entries in the order of their use, the last used entry is the last one.
+     */
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long totalSize;
+
+    /**
+     * Opens the cache in the given directory, which is created if needed.
+     *
+     * @param directory the directory of the entries.
+     * @param budget    the largest total size of the entries in bytes.
+     */
+    public ResultCache(File directory, long budget) throws IOException {
+        this.directory = directory;
+        this.budget = budget;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create the directory " + directory);
+        }
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(SUFFIX));
+        List<File> sorted = new ArrayList<>(Arrays.asList(files != null ? files : new File[0]));
+        sorted.sort(Comparator.comparingLong(File::lastModified));
+        for (File file : sorted) {
+            entries.put(file.getName(), file.length());
+            totalSize += file.length();
+        }
+    }
+
+    /**
+     * Sets the parameters of the model and, if the run is in the cache, restores the state at the given time.
+     *
+     * @param model      the model.
+     * @param parameters the parameters of the run, including the seed.
+     * @param modelTime  the model time at the end of the run.
+     * @return {@code true} if the state is restored, and {@code false} if the model is at the initial state.
+     */
+    public synchronized boolean restore(TASEPModel model, HashMap<String, Object> parameters, double modelTime)
+            throws IOException {
+        model.setParameters(parameters);
+        File file = find(parameters, modelTime);
+        if (file == null) {
+            return false;
+        }
+        try (DataInputStream input = open(file)) {
+            skipObservables(input);
+            model.readState(input);
+        }
+        return true;
+    }
+
+    /**
+     * Returns an observable of a cached run, without reading the state of the model.
+     *
+     * @param parameters the parameters of the run, including the seed.
+     * @param modelTime  the model time at the end of the run.
+     * @param name       the name of the observable.
+     * @return the values of the observable, or {@code null} if the run or the observable is not in the cache.
+     */
+    public synchronized double[] getObservable(HashMap<String, Object> parameters, double modelTime, String name)
+            throws IOException {
+        File file = find(parameters, modelTime);
+        if (file == null) {
+            return null;
+        }
+        try (DataInputStream input = open(file)) {
+            int observablesNumber = input.readInt();
+            for (int k = 0; k < observablesNumber; k++) {
+                String observableName = input.readUTF();
+                double[] values = new double[input.readInt()];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = input.readDouble();
+                }
+                if (observableName.equals(name)) {
+                    return values;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Stores the state of the model at its current model time together with the observables of the run.
+     * Nothing is stored if the parameters contain no seed.
+     *
+     * @param model       the model after the run.
+     * @param parameters  the parameters of the run, including the seed.
+     * @param observables the observables of the run by their names.
+     */
+    public synchronized void store(TASEPModel model, HashMap<String, Object> parameters,
+                                   Map<String, double[]> observables) throws IOException {
+        if (parameters.get(TASEPUtils.SEED_PARAMETER) == null) {
+            return;
+        }
+        String name = key(parameters, model.getModelTime()) + SUFFIX;
+        File temporary = File.createTempFile("entry", ".tmp", directory);
+        try {
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+                    new DeflaterOutputStream(new FileOutputStream(temporary))))) {
+                output.writeInt(observables.size());
+                for (Map.Entry<String, double[]> observable : observables.entrySet()) {
+                    output.writeUTF(observable.getKey());
+                    output.writeInt(observable.getValue().length);
+                    for (double value : observable.getValue()) {
+                        output.writeDouble(value);
+                    }
+                }
+                model.writeState(output);
+            }
+            Files.move(temporary.toPath(), new File(directory, name).toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary.toPath());
+        }
+        Long previousSize = entries.remove(name);
+        if (previousSize != null) {
+            totalSize -= previousSize;
+        }
+        long size = new File(directory, name).length();
+        entries.put(name, size);
+        totalSize += size;
+        evict(name);
+    }
+
+    /**
+     * Restores the run from the cache, or advances the model and stores the result.
+     *
+     * @param model      the model.
+     * @param parameters the parameters of the run, including the seed.
+     * @param modelTime  the model time at the end of the run.
+     * @return {@code true} if the run was found in the cache.
+     */
+    public boolean advance(TASEPModel model, HashMap<String, Object> parameters, double modelTime)
+            throws IOException {
+        if (restore(model, parameters, modelTime)) {
+            return true;
+        }
+        model.advance(modelTime);
+        store(model, parameters, Collections.emptyMap());
+        return false;
+    }
+
+    public synchronized long getTotalSize() {
+        return totalSize;
+    }
+
+    public synchronized int getEntriesNumber() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the file of the run and marks it as used, or {@code null} if the run is not in the cache.
+     */
+    private File find(HashMap<String, Object> parameters, double modelTime) {
+        if (parameters.get(TASEPUtils.SEED_PARAMETER) == null) {
+            return null;
+        }
+        String name = key(parameters, modelTime) + SUFFIX;
+        File file = new File(directory, name);
+        if (!file.isFile()) {
+            Long size = entries.remove(name);
+            if (size != null) {
+                totalSize -= size;
+            }
+            return null;
+        }
+        if (entries.get(name) == null) {
+            // The entry was stored by another process.
+            entries.put(name, file.length());
+            totalSize += file.length();
+        }
+        file.setLastModified(System.currentTimeMillis());
+        return file;
+    }
+
+    /**
+     * Deletes the least recently used entries until the total size fits into the budget, keeping the given entry.
+     */
+    private void evict(String keep) {
+        Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+        while (totalSize > budget && iterator.hasNext()) {
+            Map.Entry<String, Long> entry = iterator.next();
+            if (!entry.getKey().equals(keep)) {
+                new File(directory, entry.getKey()).delete();
+                totalSize -= entry.getValue();
+                iterator.remove();
+            }
+        }
+    }
+
+    private static DataInputStream open(File file) throws IOException {
+        return new DataInputStream(new BufferedInputStream(new InflaterInputStream(new FileInputStream(file))));
+    }
+
+    private static void skipObservables(DataInputStream input) throws IOException {
+        int observablesNumber = input.readInt();
+        for (int k = 0; k < observablesNumber; k++) {
+            input.readUTF();
+            int length = input.readInt();
+            for (int i = 0; i < length; i++) {
+                input.readDouble();
+            }
+        }
+    }
+
+    /**
+     * Returns the hexadecimal SHA-256 hash of the parameters which change the evolution, see {@link #KEY_PARAMETERS},
+     * and of the model time. The other parameters, e.g. the renderer or the files, are not a part of the key,
+     * so that the runs which differ only in them share the entry.
+     */
+    static String key(HashMap<String, Object> parameters, double modelTime) {
+        StringBuilder description = new StringBuilder("version=").append(FORMAT_VERSION)
+                .append(";time=").append(modelTime);
+        for (String name : KEY_PARAMETERS) {
+            description.append(';').append(name).append('=').append(parameters.get(name));
+        }
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256")
+                    .digest(description.toString().getBytes(StandardCharsets.UTF_8));
+            StringBuilder key = new StringBuilder();
+            for (byte b : hash) {
+                key.append(Character.forDigit((b >> 4) & 15, 16)).append(Character.forDigit(b & 15, 16));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
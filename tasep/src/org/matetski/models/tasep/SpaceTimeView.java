@@ -0,0 +1,110 @@
+package org.matetski.models.tasep;
+
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+import org.matetski.utils.PixelBuffer;
+
+import java.util.Arrays;
+
+/**
+ * The space-time diagram of the particles: each row shows the occupied sites of the visible lattice and time
+ * runs downward. The rows are kept in a circular image, so each frame writes a single row
+ * and the history is never redrawn.
+ *
+ * @author K.Matetski
+ */
+final class SpaceTimeView {
+
+    private final int width, height;
+
+    private final WritableImage image;
+
+    private final int[] row;
+
+    /**
+     * The row of the image which will be written next.
+     */
+    private int nextRow = 0;
+
+    /**
+     * The number of rows written since the last reset, at most the height of the image.
+     */
+    private int rowsNumber = 0;
+
+    /**
+     * The model time of the last written row.
+     */
+    private double lastTime = Double.NaN;
+
+    SpaceTimeView(int width, int height) {
+        this.width = width;
+        this.height = height;
+        image = new WritableImage(width, height);
+        row = new int[width];
+    }
+
+    int getWidth() {
+        return width;
+    }
+
+    int getHeight() {
+        return height;
+    }
+
+    /**
+     * Forgets the history, e.g. after the model is reinitialized.
+     */
+    void clear() {
+        nextRow = 0;
+        rowsNumber = 0;
+        lastTime = Double.NaN;
+    }
+
+    /**
+     * Appends the current occupation of the visible sites as a new row, unless the model time has not changed.
+     * The cost is proportional to the width of the view.
+     */
+    void append(TASEPModel model) {
+        if (model.getModelTime() == lastTime) {
+            return;
+        }
+        lastTime = model.getModelTime();
+        Arrays.fill(row, PixelBuffer.WHITE);
+        double particleSize = model.getParticleSize();
+        ParticleStorage particles = model.getParticles();
+        long maxSite = (long) Math.ceil(width / 2.0 / particleSize) + 1,
+                minSite = (long) Math.floor(-width / 2.0 / particleSize) - 1,
+                lastParticle = model.countParticlesRightOf(minSite);
+        for (long k = model.countParticlesRightOf(maxSite); k < lastParticle; k++) {
+            double left = width / 2.0 + particleSize * particles.get(k) - particleSize / 2;
+            int from = Math.max(0, (int) Math.floor(left)),
+                    to = Math.min(width, (int) Math.ceil(left + particleSize));
+            for (int x = from; x < to; x++) {
+                row[x] = PixelBuffer.BLUE;
+            }
+        }
+        image.getPixelWriter().setPixels(0, nextRow, width, 1, PixelFormat.getIntArgbInstance(), row, 0, width);
+        nextRow = (nextRow + 1) % height;
+        rowsNumber = Math.min(rowsNumber + 1, height);
+    }
+
+    /**
+     * Draws the diagram with its upper left corner at the given point, the newest row at the bottom.
+     */
+    void draw(GraphicsContext graphicsContext, double x, double y) {
+        graphicsContext.setFill(Color.WHITE);
+        graphicsContext.fillRect(x, y, width, height);
+        if (rowsNumber < height) {
+            graphicsContext.drawImage(image, 0, 0, width, rowsNumber, x, y + height - rowsNumber, width, rowsNumber);
+        } else {
+            int olderRows = height - nextRow;
+            graphicsContext.drawImage(image, 0, nextRow, width, olderRows, x, y, width, olderRows);
+            graphicsContext.drawImage(image, 0, 0, width, nextRow, x, y + olderRows, width, nextRow);
+        }
+        graphicsContext.setStroke(Color.BLACK);
+        graphicsContext.setLineWidth(TASEPUtils.AXIS_LINE_WIDTH);
+        graphicsContext.strokeLine(x, y + height, x + width, y + height);
+    }
+}
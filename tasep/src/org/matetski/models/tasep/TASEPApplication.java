@@ -1,24 +1,46 @@
 package org.matetski.models.tasep;
 
 import javafx.application.Application;
+import javafx.stage.Stage;
 import org.matetski.apps.ModelApplication;
 import org.matetski.utils.Model;
 
 /**
- * The application displaying a TASEP evolution.
+ * The application displaying a TASEP evolution. If the system property {@link TASEPUtils#SERVER_PORT_PROPERTY}
+ * is set, the evolution is also streamed by a local {@link TASEPServer}.
  *
  * @author K.Matetski
  */
 
 public class TASEPApplication extends ModelApplication {
 
-    private final Model MODEL = new TASEPModel();
+    private final TASEPModel MODEL = new TASEPModel();
+
+    private TASEPServer server;
 
     @Override
     protected Model getModel() {
         return MODEL;
     }
 
+    @Override
+    public void start(Stage primaryStage) throws Exception {
+        Integer port = Integer.getInteger(TASEPUtils.SERVER_PORT_PROPERTY);
+        if (port != null) {
+            server = new TASEPServer(port, TASEPUtils.SERVER_MAX_PARTICLES);
+            MODEL.addListener(server);
+        }
+        super.start(primaryStage);
+    }
+
+    @Override
+    public void stop() throws Exception {
+        if (server != null) {
+            server.close();
+        }
+        super.stop();
+    }
+
     public static void main(String[] args) {
         Application.launch(args);
     }
@@ -0,0 +1,97 @@
+package org.matetski.models.tasep;
+
+import javafx.application.Application;
+import org.matetski.apps.ComparisonApplication;
+import org.matetski.utils.Model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.matetski.models.tasep.TASEPUtils.*;
+
+/**
+ * The application displaying several TASEP evolutions side by side. Each argument describes one evolution
+ * by the parameters which differ from the control panel, e.g. {@code JUMP_RATE=0.25,INITIAL_DATA=STEP}.
+ * Without arguments the evolutions from all initial data are compared.
+ *
+ * @author K.Matetski
+ */
+public class TASEPComparisonApplication extends ComparisonApplication {
+
+    private final List<Model> models = new ArrayList<>();
+
+    private final List<HashMap<String, Object>> overrides = new ArrayList<>();
+
+    private final List<String> descriptions = new ArrayList<>();
+
+    @Override
+    protected List<Model> getModels() {
+        if (models.isEmpty()) {
+            createModels();
+        }
+        return models;
+    }
+
+    @Override
+    protected List<HashMap<String, Object>> getOverrides() {
+        getModels();
+        return overrides;
+    }
+
+    @Override
+    protected List<String> getDescriptions() {
+        getModels();
+        return descriptions;
+    }
+
+    private void createModels() {
+        List<String> arguments = new ArrayList<>(getParameters().getUnnamed());
+        if (arguments.isEmpty()) {
+            for (InitialData initialData : InitialData.values()) {
+                arguments.add(INITIAL_DATA_PARAMETER + "=" + initialData.name());
+            }
+        }
+        for (String argument : arguments) {
+            HashMap<String, Object> parameters = new HashMap<>();
+            for (String assignment : argument.split(",")) {
+                String[] parts = assignment.split("=", 2);
+                if (parts.length != 2) {
+                    throw new IllegalArgumentException("Expected NAME=VALUE instead of " + assignment);
+                }
+                parameters.put(parts[0].trim(), parseValue(parts[0].trim(), parts[1].trim()));
+            }
+            models.add(new TASEPModel());
+            overrides.add(parameters);
+            descriptions.add(argument);
+        }
+    }
+
+    /**
+     * Converts the value of a parameter given as a string to the type expected by the model.
+     */
+    private static Object parseValue(String name, String value) {
+        switch (name) {
+            case JUMP_RATE_PARAMETER:
+            case LEFT_RATE_PARAMETER:
+            case PARTICLE_SIZE_PARAMETER:
+                return Double.valueOf(value);
+            case INITIAL_DATA_PARAMETER:
+                return InitialData.valueOf(value);
+            case DYNAMICS_PARAMETER:
+                return Dynamics.valueOf(value);
+            case ANGLE_PARAMETER:
+                return Angle.valueOf(value);
+            case RENDERER_PARAMETER:
+                return Renderer.valueOf(value);
+            case SEED_PARAMETER:
+                return Long.valueOf(value);
+            default:
+                throw new IllegalArgumentException("The parameter cannot be compared: " + name);
+        }
+    }
+
+    public static void main(String[] args) {
+        Application.launch(args);
+    }
+}
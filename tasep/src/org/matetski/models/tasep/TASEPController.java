@@ -2,6 +2,7 @@ package org.matetski.models.tasep;
 
 import javafx.collections.FXCollections;
 import javafx.fxml.FXML;
+import javafx.scene.control.CheckBox;
 import javafx.scene.control.ChoiceBox;
 import javafx.scene.control.Slider;
 import org.matetski.gui.Controller;
@@ -28,6 +29,22 @@ public class TASEPController extends Controller {
     @FXML
     private Slider jumpRate;
 
+    @SuppressWarnings("CanBeFinal")
+    @FXML
+    private ChoiceBox<Dynamics> dynamics;
+
+    @SuppressWarnings("CanBeFinal")
+    @FXML
+    private Slider leftRate;
+
+    @SuppressWarnings("CanBeFinal")
+    @FXML
+    private ChoiceBox<Renderer> renderer;
+
+    @SuppressWarnings("CanBeFinal")
+    @FXML
+    private CheckBox spaceTime;
+
     /**
      * Updates parameters after their change on the panel.
      *
@@ -46,6 +63,10 @@ public class TASEPController extends Controller {
         initialData.setItems(FXCollections.observableArrayList(InitialData.values()));
         angle.getItems().clear();
         angle.setItems(FXCollections.observableArrayList(Angle.values()));
+        dynamics.getItems().clear();
+        dynamics.setItems(FXCollections.observableArrayList(Dynamics.values()));
+        renderer.getItems().clear();
+        renderer.setItems(FXCollections.observableArrayList(Renderer.values()));
 
         initialData.getSelectionModel().selectedItemProperty().addListener(
                 (observable, oldValue, newValue) -> stateChangedAction(true)
@@ -53,8 +74,16 @@ public class TASEPController extends Controller {
         angle.getSelectionModel().selectedItemProperty().addListener(
                 (observable, oldValue, newValue) -> stateChangedAction(true)
         );
+        dynamics.getSelectionModel().selectedItemProperty().addListener(
+                (observable, oldValue, newValue) -> stateChangedAction(true)
+        );
+        renderer.getSelectionModel().selectedItemProperty().addListener(
+                (observable, oldValue, newValue) -> stateChangedAction(true)
+        );
+        spaceTime.selectedProperty().addListener((listener) -> stateChangedAction(true));
         particleRadius.valueProperty().addListener((listener) -> stateChangedAction(true));
         jumpRate.valueProperty().addListener((listener) -> stateChangedAction(false));
+        leftRate.valueProperty().addListener((listener) -> stateChangedAction(false));
     }
 
     @Override
@@ -64,6 +93,10 @@ public class TASEPController extends Controller {
         parameters.put(ANGLE_PARAMETER, angle.getValue());
         parameters.put(PARTICLE_SIZE_PARAMETER, particleRadius.getValue());
         parameters.put(JUMP_RATE_PARAMETER, jumpRate.getValue());
+        parameters.put(DYNAMICS_PARAMETER, dynamics.getValue());
+        parameters.put(LEFT_RATE_PARAMETER, leftRate.getValue());
+        parameters.put(RENDERER_PARAMETER, renderer.getValue());
+        parameters.put(SPACE_TIME_PARAMETER, spaceTime.isSelected());
         return parameters;
     }
 
@@ -73,6 +106,10 @@ public class TASEPController extends Controller {
         angle.setValue((Angle) parameters.get(ANGLE_PARAMETER));
         particleRadius.setValue((Double) parameters.get(PARTICLE_SIZE_PARAMETER));
         jumpRate.setValue((Double) parameters.get(JUMP_RATE_PARAMETER));
+        dynamics.setValue((Dynamics) parameters.get(DYNAMICS_PARAMETER));
+        leftRate.setValue((Double) parameters.get(LEFT_RATE_PARAMETER));
+        renderer.setValue((Renderer) parameters.get(RENDERER_PARAMETER));
+        spaceTime.setSelected((Boolean) parameters.get(SPACE_TIME_PARAMETER));
     }
 
     @Override
@@ -81,6 +118,10 @@ public class TASEPController extends Controller {
         angle.setDisable(true);
         particleRadius.setDisable(true);
         jumpRate.setDisable(true);
+        dynamics.setDisable(true);
+        leftRate.setDisable(true);
+        renderer.setDisable(true);
+        spaceTime.setDisable(true);
     }
 
     @Override
@@ -89,6 +130,10 @@ public class TASEPController extends Controller {
         angle.setDisable(false);
         particleRadius.setDisable(false);
         jumpRate.setDisable(false);
+        dynamics.setDisable(false);
+        leftRate.setDisable(false);
+        renderer.setDisable(false);
+        spaceTime.setDisable(false);
     }
 
     @Override
@@ -0,0 +1,83 @@
+package org.matetski.models.tasep;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Java Flight Recorder events of the model. They cost nothing unless a recording is running,
+ * e.g. with {@code -XX:StartFlightRecording}.
+ *
+ * @author K.Matetski
+ */
+final class TASEPEvents {
+
+    private TASEPEvents() {
+    }
+
+    @Name("org.matetski.tasep.Update")
+    @Label("TASEP Update")
+    @Category("TASEP")
+    @Description("Evolution of the particles during a time interval")
+    static final class UpdateEvent extends Event {
+
+        @Label("Attempts")
+        long attempts;
+
+        @Label("Jumps")
+        @Description("The number of accepted jumps")
+        long jumps;
+
+        @Label("Particles")
+        long particles;
+
+        @Label("Model Time")
+        double modelTime;
+    }
+
+    @Name("org.matetski.tasep.Paint")
+    @Label("TASEP Paint")
+    @Category("TASEP")
+    static final class PaintEvent extends Event {
+
+        @Label("Particles")
+        long particles;
+
+        @Label("Renderer")
+        String renderer;
+    }
+
+    @Name("org.matetski.tasep.Initialization")
+    @Label("TASEP Initialization")
+    @Category("TASEP")
+    @Description("Creation of the initial configuration of the particles")
+    static final class InitializationEvent extends Event {
+
+        @Label("Particles")
+        long particles;
+
+        @Label("Initial Data")
+        String initialData;
+    }
+
+    @Name("org.matetski.tasep.Parameters")
+    @Label("TASEP Parameters")
+    @Category("TASEP")
+    @Description("Change of the parameters of the model")
+    static final class ParametersEvent extends Event {
+
+        @Label("Initial Data")
+        String initialData;
+
+        @Label("Jump Rate")
+        double jumpRate;
+
+        @Label("Particle Size")
+        double particleSize;
+
+        @Label("Renderer")
+        String renderer;
+    }
+}
@@ -0,0 +1,126 @@
+package org.matetski.models.tasep;
+
+import org.matetski.utils.PixelBuffer;
+
+import static org.matetski.models.tasep.TASEPUtils.*;
+
+/**
+ * A snapshot of the particles which are visible in a window, together with the parameters needed to draw them.
+ * The snapshot can be rasterized into a {@link PixelBuffer} on any thread, while the model keeps evolving.
+ *
+ * @author K.Matetski
+ */
+final class TASEPFrame {
+
+    private double width, height;
+
+    private double particleSize, jumpRate, modelTime;
+
+    private InitialData initialData;
+
+    private long particlesNumber;
+
+    /**
+     * The number of the first particle in the snapshot.
+     */
+    private long firstParticle;
+
+    /**
+     * The positions of the visible particles, starting from {@code firstParticle}.
+     */
+    private int[] positions = new int[0];
+
+    private int positionsNumber;
+
+    /**
+     * Copies the particles of the model which are visible in the window of the given size.
+     * Only one particle on each side outside of the window is kept, so the cost of the snapshot
+     * does not depend on the total number of particles.
+     */
+    void capture(TASEPModel model, int width, int height) {
+        this.width = width;
+        this.height = height;
+        particleSize = model.getParticleSize();
+        jumpRate = model.getJumpRate();
+        modelTime = model.getModelTime();
+        initialData = model.getInitialData();
+        ParticleStorage particles = model.getParticles();
+        particlesNumber = particles.size();
+
+        long maxSite = (long) Math.ceil(width / 2.0 / particleSize) + 1,
+                minSite = (long) Math.floor(-width / 2.0 / particleSize) - 1;
+        firstParticle = Math.max(0, model.countParticlesRightOf(maxSite) - 1);
+        long lastParticle = Math.min(particlesNumber, model.countParticlesRightOf(minSite - 1) + 1);
+        positionsNumber = (int) (lastParticle - firstParticle);
+        if (positions.length < positionsNumber) {
+            positions = new int[positionsNumber];
+        }
+        for (int k = 0; k < positionsNumber; k++) {
+            positions[k] = particles.get(firstParticle + k);
+        }
+    }
+
+    double getModelTime() {
+        return modelTime;
+    }
+
+    /**
+     * Draws the particles and the interface into the buffer, in the same way as they are drawn on the canvas.
+     *
+     * @return the vertical coordinate of the lowest visible point of the interface.
+     */
+    double render(PixelBuffer buffer) {
+        buffer.fill(PixelBuffer.WHITE);
+        double axis = height - particleSize - BOTTOM_MARGIN_HEIGHTS;
+        buffer.drawLine(0, axis, width, axis, PixelBuffer.BLACK);
+        renderParticles(buffer);
+        renderTrend(buffer, axis);
+        return renderCorners(buffer);
+    }
+
+    private void renderParticles(PixelBuffer buffer) {
+        double top = height - particleSize - BOTTOM_MARGIN_TASEP;
+        for (int k = 0; k < positionsNumber; k++) {
+            buffer.fillDisc((int) (width / 2 + particleSize * positions[k] - particleSize / 2), top,
+                    particleSize, PixelBuffer.BLUE);
+        }
+    }
+
+    private void renderTrend(PixelBuffer buffer, double axis) {
+        switch (initialData) {
+            case HALF_FLAT:
+                buffer.drawLine(width / 2, axis, width / 2 + height, axis - height, PixelBuffer.BLACK);
+                break;
+            case FLAT:
+                double trend = jumpRate * modelTime * particleSize / 2;
+                buffer.drawLine(0, axis - trend, width, axis - trend, PixelBuffer.RED);
+                break;
+            case STEP:
+                buffer.drawLine(width / 2, axis, width / 2 - height, axis - height, PixelBuffer.BLACK);
+                buffer.drawLine(width / 2, axis, width / 2 + height, axis - height, PixelBuffer.BLACK);
+                break;
+        }
+    }
+
+    private double renderCorners(PixelBuffer buffer) {
+        double centering = (initialData == InitialData.FLAT) ? particlesNumber : 0,
+                lowest = 0;
+        for (int k = 0; k < positionsNumber; k++) {
+            long particleNumber = firstParticle + k;
+            double horizontalShift = width / 2 + particleSize * (positions[k] - 1),
+                    verticalShift = height - BOTTOM_MARGIN_HEIGHTS
+                            - particleSize * (positions[k] + 2 * particleNumber - centering + 1);
+            buffer.drawLine(horizontalShift, verticalShift - particleSize,
+                    horizontalShift + particleSize, verticalShift, PixelBuffer.BLUE);
+            if (k > 0) {
+                buffer.drawLine(horizontalShift + particleSize, verticalShift,
+                        width / 2 + particleSize * (positions[k - 1] - 1),
+                        height - BOTTOM_MARGIN_HEIGHTS
+                                - particleSize * (positions[k - 1] + 2 * (particleNumber - 1) - centering + 2),
+                        PixelBuffer.BLUE);
+            }
+            lowest = Math.max(lowest, verticalShift);
+        }
+        return lowest;
+    }
+}
@@ -0,0 +1,25 @@
+package org.matetski.models.tasep;
+
+/**
+ * A listener which is notified about the evolution of a {@link TASEPModel}, e.g. to compute statistics
+ * inside the simulation loop.
+ *
+ * @author K.Matetski
+ */
+public interface TASEPListener {
+
+    /**
+     * Is called after the particles are set to their initial configuration.
+     *
+     * @param model the model whose particles are initialized.
+     */
+    default void initialized(TASEPModel model) {
+    }
+
+    /**
+     * Is called after each update of the model.
+     *
+     * @param model the updated model.
+     */
+    void updated(TASEPModel model);
+}
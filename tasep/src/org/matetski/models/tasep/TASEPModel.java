@@ -2,11 +2,22 @@ package org.matetski.models.tasep;
 
 import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.paint.Color;
+import org.matetski.models.tasep.TASEPEvents.InitializationEvent;
+import org.matetski.models.tasep.TASEPEvents.PaintEvent;
+import org.matetski.models.tasep.TASEPEvents.ParametersEvent;
+import org.matetski.models.tasep.TASEPEvents.UpdateEvent;
+import org.matetski.utils.BlockVariates;
+import org.matetski.utils.JumpEventRing;
 import org.matetski.utils.Model;
 import org.matetski.utils.ModelUtils;
 
 import java.awt.*;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
 import java.util.*;
+import java.util.List;
 
 import static org.matetski.models.tasep.TASEPUtils.*;
 
@@ -24,9 +35,54 @@ public class TASEPModel extends Model {
     private double jumpRate;
 
     /**
-     * This array contains positions of the particles. The 0th element is the right most particle.
+     * The rules of the jumps.
      */
-    private int[] particles;
+    private Dynamics dynamics;
+
+    /**
+     * The rate of the jumps to the left for ASEP and PushASEP, and the parameter q for q-TASEP.
+     */
+    private double leftRate;
+
+    /**
+     * The powers {@code q^g} of the parameter of q-TASEP.
+     */
+    private final double[] qPowers = new double[Q_TASEP_POWERS];
+
+    /**
+     * The numbers of attempts and of made jumps during the last call of a kernel.
+     */
+    private long attempts, jumps;
+
+    /**
+     * This storage contains positions of the particles. The 0th element is the right most particle.
+     */
+    private ParticleStorage particles;
+
+    /**
+     * The file backing the particles, or {@code null} if the particles are kept in memory.
+     */
+    private File storageFile;
+
+    /**
+     * The file where the state is published for other processes, or {@code null} if it is not published.
+     */
+    private File liveStateFile;
+
+    /**
+     * The published state, whose file backs the particles.
+     */
+    private LiveState liveState;
+
+    /**
+     * The seed of the random evolution, or {@code null} if every run should be different.
+     */
+    private Long seed;
+
+    /**
+     * The source of the waiting times and of the numbers of the jumping particles.
+     */
+    private BlockVariates variates;
 
     /**
      * Initial configuration of particles, e.g. flat, step or half flat.
@@ -43,6 +99,26 @@ public class TASEPModel extends Model {
      */
     private double particleSize;
 
+    /**
+     * The way the model is drawn on the canvas.
+     */
+    private Renderer renderer;
+
+    /**
+     * Draws the model through a pixel buffer, created when it is needed.
+     */
+    private TASEPPixelRenderer pixelRenderer;
+
+    /**
+     * Is true if the space-time diagram is drawn at the top of the canvas.
+     */
+    private boolean spaceTime;
+
+    /**
+     * The space-time diagram, created when it is needed.
+     */
+    private SpaceTimeView spaceTimeView;
+
     /**
      * The model time, needed to draw the average value.
      */
@@ -53,6 +129,11 @@ public class TASEPModel extends Model {
      */
     private boolean canBeStopped = false;
 
+    /**
+     * Listeners notified about the evolution of the model.
+     */
+    private final List<TASEPListener> listeners = new ArrayList<>();
+
     @Override
     public String getControlGUIFileName() {
         return CONTROL_GUI_FILE_NAME;
@@ -71,13 +152,39 @@ public class TASEPModel extends Model {
     @Override
     public void setParameters(HashMap<String, Object> parameters) {
         if (parameters != null) {
+            ParametersEvent event = new ParametersEvent();
+            event.begin();
             initialData = (InitialData) parameters.get(INITIAL_DATA_PARAMETER);
             angle = (Angle) parameters.get(ANGLE_PARAMETER);
             jumpRate = (Double) parameters.get(JUMP_RATE_PARAMETER);
+            dynamics = (Dynamics) parameters.get(DYNAMICS_PARAMETER);
+            if (dynamics == null) {
+                dynamics = DEFAULT_DYNAMICS;
+            }
+            Double leftRateValue = (Double) parameters.get(LEFT_RATE_PARAMETER);
+            leftRate = leftRateValue != null ? leftRateValue : DEFAULT_LEFT_RATE;
+            for (int gap = 0; gap < qPowers.length; gap++) {
+                qPowers[gap] = Math.pow(leftRate, gap);
+            }
             particleSize = (Double) parameters.get(PARTICLE_SIZE_PARAMETER);
+            storageFile = (File) parameters.get(STORAGE_FILE_PARAMETER);
+            liveStateFile = (File) parameters.get(LIVE_STATE_FILE_PARAMETER);
+            seed = (Long) parameters.get(SEED_PARAMETER);
+            renderer = (Renderer) parameters.get(RENDERER_PARAMETER);
+            if (renderer == null) {
+                renderer = DEFAULT_RENDERER;
+            }
+            spaceTime = Boolean.TRUE.equals(parameters.get(SPACE_TIME_PARAMETER));
             Dimension windowSize = (Dimension) parameters.get(ModelUtils.SIZE_PARAMETER);
 
             initializeParticles(windowSize);
+            if (event.shouldCommit()) {
+                event.initialData = initialData.name();
+                event.jumpRate = jumpRate;
+                event.particleSize = particleSize;
+                event.renderer = renderer.name();
+                event.commit();
+            }
         }
     }
 
@@ -85,9 +192,13 @@ public class TASEPModel extends Model {
     public HashMap<String, Object> getDefaultParameters() {
         HashMap<String, Object> parameters = new HashMap<>();
         parameters.put(JUMP_RATE_PARAMETER, DEFAULT_JUMP_RATE);
+        parameters.put(DYNAMICS_PARAMETER, DEFAULT_DYNAMICS);
+        parameters.put(LEFT_RATE_PARAMETER, DEFAULT_LEFT_RATE);
         parameters.put(PARTICLE_SIZE_PARAMETER, DEFAULT_PARTICLE_SIZE);
         parameters.put(ANGLE_PARAMETER, DEFAULT_ANGLE);
         parameters.put(INITIAL_DATA_PARAMETER, DEFAULT_INITIAL_DATA);
+        parameters.put(RENDERER_PARAMETER, DEFAULT_RENDERER);
+        parameters.put(SPACE_TIME_PARAMETER, DEFAULT_SPACE_TIME);
         return parameters;
     }
 
@@ -99,27 +210,201 @@ public class TASEPModel extends Model {
      * Initializes the starting configuration of the particles.
      * In the flat case the number of particles is taken bigger than the width of the window,
      * to make sure that the left border cannot be seen before hitting the top of the window.
+     *
+     * @throws IllegalArgumentException if the number of particles exceeds {@link InitialData#getMaxParticlesNumber()}.
      */
     private void initializeParticles(Dimension size) {
+        InitializationEvent event = new InitializationEvent();
+        event.begin();
         modelTime = 0;
         canBeStopped = false;
-        int width = (int) (size.getWidth() / particleSize);
-        int height = (int) (size.getHeight() / particleSize);
+        long width = (long) (size.getWidth() / particleSize);
+        long height = (long) (size.getHeight() / particleSize);
+        long particlesNumber = 0;
         switch (initialData) {
             case FLAT:
-                particles = new int[width / 2 + (int) (height / jumpRate)];
+                particlesNumber = width / 2 + (long) (height / jumpRate);
                 break;
             case HALF_FLAT:
                 //TODO: to put the correct speed
-                particles = new int[width / 4 + (int) (height / jumpRate) / 2];
+                particlesNumber = width / 4 + (long) (height / jumpRate) / 2;
                 break;
             case STEP:
                 //TODO: to put the correct speed
-                particles = new int[width / 2 + (int) (height / jumpRate) / 2];
+                particlesNumber = width / 2 + (long) (height / jumpRate) / 2;
                 break;
         }
-        for (int k = 0; k < particles.length; k++) {
-            particles[k] = initialData.getInitialPosition(particles.length, k);
+        if (particlesNumber > initialData.getMaxParticlesNumber()) {
+            throw new IllegalArgumentException("The positions of " + particlesNumber + " particles do not fit in int, "
+                    + "at most " + initialData.getMaxParticlesNumber() + " are possible for " + initialData
+                    + " initial data, increase the particle size or the jump rate");
+        }
+        if (particles != null) {
+            particles.release();
+        }
+        if (liveStateFile == null) {
+            liveState = null;
+            particles = ParticleStorage.allocate(particlesNumber, storageFile);
+        } else {
+            openLiveState();
+            liveState.beginWrite();
+            try {
+                particles = liveState.allocate(particlesNumber);
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot map the particles to " + liveStateFile, e);
+            }
+        }
+        for (long k = 0; k < particlesNumber; k++) {
+            particles.set(k, initialData.getInitialPosition(particlesNumber, k));
+        }
+        if (liveState != null) {
+            liveState.endWrite(modelTime, particlesNumber);
+        }
+        variates = new BlockVariates(seed != null ? seed : new Random().nextLong(), VARIATES_BLOCK_SIZE);
+        variates.setBound(Math.max(1, particlesNumber));
+        if (spaceTimeView != null) {
+            spaceTimeView.clear();
+        }
+        if (event.shouldCommit()) {
+            event.particles = particlesNumber;
+            event.initialData = initialData.name();
+            event.commit();
+        }
+        for (int k = 0; k < listeners.size(); k++) {
+            listeners.get(k).initialized(this);
+        }
+    }
+
+    /**
+     * Opens the file of the published state, unless it is already open.
+     */
+    private void openLiveState() {
+        if (liveState == null || !liveState.getFile().equals(liveStateFile)) {
+            try {
+                liveState = new LiveState(liveStateFile);
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot publish the state to " + liveStateFile, e);
+            }
+        }
+    }
+
+    public void addListener(TASEPListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(TASEPListener listener) {
+        listeners.remove(listener);
+    }
+
+    public ParticleStorage getParticles() {
+        return particles;
+    }
+
+    public double getModelTime() {
+        return modelTime;
+    }
+
+    public double getJumpRate() {
+        return jumpRate;
+    }
+
+    public InitialData getInitialData() {
+        return initialData;
+    }
+
+    public double getParticleSize() {
+        return particleSize;
+    }
+
+    /**
+     * Returns the number of particles at the sites to the right of the given one.
+     *
+     * @param site the site on the lattice.
+     * @return the number of particles to the right of the site.
+     */
+    public long countParticlesRightOf(long site) {
+        return particles.countRightOf(site);
+    }
+
+    /**
+     * Returns the height of the interface above the given site, as it is drawn on the canvas.
+     * The height increases by one to the left of a particle and decreases by one to the left of a hole.
+     *
+     * @param site the site on the lattice.
+     * @return the height of the interface.
+     */
+    public long getHeight(long site) {
+        long centering = (initialData == InitialData.FLAT) ? particles.size() : 0;
+        return 2 * countParticlesRightOf(site) + site - centering;
+    }
+
+    /**
+     * Computes the heights of the interface above consecutive sites, walking through the particles
+     * from left to right. The cost is proportional to the number of sites.
+     *
+     * @param fromSite the left most site.
+     * @param heights  the array where the heights above the sites {@code fromSite, fromSite + 1, ...} are written.
+     */
+    public void getHeights(long fromSite, long[] heights) {
+        long particleNumber = countParticlesRightOf(fromSite);
+        long height = getHeight(fromSite);
+        for (int k = 0; k < heights.length; k++) {
+            heights[k] = height;
+            // The height goes down by one to the right of a particle and up by one to the right of a hole.
+            if (particleNumber > 0 && particles.get(particleNumber - 1) == fromSite + k + 1) {
+                particleNumber--;
+                height--;
+            } else {
+                height++;
+            }
+        }
+    }
+
+    /**
+     * Writes the state of the evolution: the model time, the positions of the particles and the state
+     * of the random generator. A model with the same parameters continues exactly as this one
+     * after reading the state by {@link #readState(DataInput)}.
+     *
+     * @param output the output where the state is written.
+     */
+    public void writeState(DataOutput output) throws IOException {
+        output.writeDouble(modelTime);
+        output.writeLong(particles.size());
+        for (long k = 0; k < particles.size(); k++) {
+            output.writeInt(particles.get(k));
+        }
+        variates.write(output);
+    }
+
+    /**
+     * Replaces the state of the evolution by the one written by {@link #writeState(DataOutput)}.
+     * The listeners are notified as after an initialization.
+     *
+     * @param input the input where the state is read from.
+     * @throws IOException if the state cannot be read or the number of particles is different.
+     */
+    public void readState(DataInput input) throws IOException {
+        double time = input.readDouble();
+        long particlesNumber = input.readLong();
+        if (particlesNumber != particles.size()) {
+            throw new IOException("The state has " + particlesNumber + " particles instead of " + particles.size());
+        }
+        if (liveState != null) {
+            liveState.beginWrite();
+        }
+        for (long k = 0; k < particlesNumber; k++) {
+            particles.set(k, input.readInt());
+        }
+        variates = BlockVariates.read(input);
+        modelTime = time;
+        if (liveState != null) {
+            liveState.endWrite(modelTime, particlesNumber);
+        }
+        if (spaceTimeView != null) {
+            spaceTimeView.clear();
+        }
+        for (int k = 0; k < listeners.size(); k++) {
+            listeners.get(k).initialized(this);
         }
     }
 
@@ -129,22 +414,193 @@ public class TASEPModel extends Model {
      * @param index number of a particle.
      * @return {@code true} if the particle can jump and {@code false} otherwise.
      */
-    private boolean canJump(int index) {
-        return !(particles == null || particles.length == 0 || index >= particles.length)
-                && (index == 0 || particles[index - 1] - particles[index] > 1);
+    private boolean canJump(long index) {
+        return !(particles == null || particles.size() == 0 || index >= particles.size())
+                && (index == 0 || particles.get(index - 1) - particles.get(index) > 1);
     }
 
     @Override
     public void update() {
-        double localTime = 0;
-        while (localTime <= 1) {
-            localTime += -Math.log(Math.random()) / (jumpRate * particles.length);
-            int numberOfJumping = (int) (Math.random() * particles.length);
+        advance(1);
+    }
+
+    /**
+     * Lets the particles evolve during the given time. The jump which would happen after the end of the interval
+     * is discarded, which does not change the law of the process, because the waiting times are exponential.
+     * Each dynamics has its own loop, which is chosen once for the whole interval.
+     *
+     * @param duration the time interval of the evolution.
+     */
+    public void advance(double duration) {
+        UpdateEvent event = new UpdateEvent();
+        event.begin();
+        long particlesNumber = particles.size();
+        JumpEventRing jumpEvents = getJumpEvents();
+        if (liveState != null) {
+            liveState.beginWrite();
+        }
+        switch (dynamics) {
+            case ASEP:
+                advanceASEP(duration, jumpEvents);
+                break;
+            case PUSH_ASEP:
+                advancePushASEP(duration, jumpEvents);
+                break;
+            case Q_TASEP:
+                advanceQTASEP(duration, jumpEvents);
+                break;
+            default:
+                advanceTASEP(duration, jumpEvents);
+                break;
+        }
+        modelTime += duration;
+        if (liveState != null) {
+            liveState.endWrite(modelTime, particlesNumber);
+        }
+        if (jumpEvents != null) {
+            jumpEvents.flush();
+        }
+        if (event.shouldCommit()) {
+            event.attempts = attempts;
+            event.jumps = jumps;
+            event.particles = particlesNumber;
+            event.modelTime = modelTime;
+            event.commit();
+        }
+        for (int k = 0; k < listeners.size(); k++) {
+            listeners.get(k).updated(this);
+        }
+    }
+
+    private void advanceTASEP(double duration, JumpEventRing jumpEvents) {
+        long particlesNumber = particles.size();
+        long attempts = 0, jumps = 0;
+        double meanWaitingTime = 1 / (jumpRate * particlesNumber);
+        double localTime = variates.nextExponential() * meanWaitingTime;
+        while (localTime <= duration) {
+            long numberOfJumping = variates.nextInteger();
+            attempts++;
             if (canJump(numberOfJumping)) {
-                particles[numberOfJumping]++;
+                particles.increment(numberOfJumping);
+                jumps++;
+                if (jumpEvents != null) {
+                    int position = particles.get(numberOfJumping);
+                    jumpEvents.publish(numberOfJumping, position - 1, position, modelTime + localTime);
+                }
             }
+            localTime += variates.nextExponential() * meanWaitingTime;
         }
-        modelTime += localTime;
+        this.attempts = attempts;
+        this.jumps = jumps;
+    }
+
+    /**
+     * The particles jump to the right with the jump rate and to the left with the left rate, if the target is empty.
+     */
+    private void advanceASEP(double duration, JumpEventRing jumpEvents) {
+        long particlesNumber = particles.size();
+        long attempts = 0, jumps = 0;
+        double meanWaitingTime = 1 / ((jumpRate + leftRate) * particlesNumber);
+        double rightProbability = jumpRate / (jumpRate + leftRate);
+        double localTime = variates.nextExponential() * meanWaitingTime;
+        while (localTime <= duration) {
+            long numberOfJumping = variates.nextInteger();
+            int position = particles.get(numberOfJumping);
+            attempts++;
+            if (variates.nextUniform() <= rightProbability) {
+                if (numberOfJumping == 0 || particles.get(numberOfJumping - 1) > position + 1) {
+                    particles.set(numberOfJumping, position + 1);
+                    jumps++;
+                    if (jumpEvents != null) {
+                        jumpEvents.publish(numberOfJumping, position, position + 1, modelTime + localTime);
+                    }
+                }
+            } else if (numberOfJumping == particlesNumber - 1 || particles.get(numberOfJumping + 1) < position - 1) {
+                particles.set(numberOfJumping, position - 1);
+                jumps++;
+                if (jumpEvents != null) {
+                    jumpEvents.publish(numberOfJumping, position, position - 1, modelTime + localTime);
+                }
+            }
+            localTime += variates.nextExponential() * meanWaitingTime;
+        }
+        this.attempts = attempts;
+        this.jumps = jumps;
+    }
+
+    /**
+     * The particles jump to the right with the jump rate if the target is empty, and to the left with the left rate,
+     * pushing the block of particles standing to the left of the jumping one.
+     */
+    private void advancePushASEP(double duration, JumpEventRing jumpEvents) {
+        long particlesNumber = particles.size();
+        long attempts = 0, jumps = 0;
+        double meanWaitingTime = 1 / ((jumpRate + leftRate) * particlesNumber);
+        double rightProbability = jumpRate / (jumpRate + leftRate);
+        double localTime = variates.nextExponential() * meanWaitingTime;
+        while (localTime <= duration) {
+            long numberOfJumping = variates.nextInteger();
+            int position = particles.get(numberOfJumping);
+            attempts++;
+            if (variates.nextUniform() <= rightProbability) {
+                if (numberOfJumping == 0 || particles.get(numberOfJumping - 1) > position + 1) {
+                    particles.set(numberOfJumping, position + 1);
+                    jumps++;
+                    if (jumpEvents != null) {
+                        jumpEvents.publish(numberOfJumping, position, position + 1, modelTime + localTime);
+                    }
+                }
+            } else {
+                // Every particle of the block moves by one to the left.
+                for (long k = numberOfJumping; k < particlesNumber; k++) {
+                    int current = particles.get(k);
+                    if (k > numberOfJumping && current < position) {
+                        break;
+                    }
+                    particles.set(k, current - 1);
+                    jumps++;
+                    if (jumpEvents != null) {
+                        jumpEvents.publish(k, current, current - 1, modelTime + localTime);
+                    }
+                    position = current - 1;
+                }
+            }
+            localTime += variates.nextExponential() * meanWaitingTime;
+        }
+        this.attempts = attempts;
+        this.jumps = jumps;
+    }
+
+    /**
+     * A particle with {@code g} empty sites in front of it jumps to the right with the rate
+     * {@code jumpRate (1 - q^g)}, where {@code q} is the left rate. The right most particle jumps with the jump rate.
+     */
+    private void advanceQTASEP(double duration, JumpEventRing jumpEvents) {
+        long particlesNumber = particles.size();
+        long attempts = 0, jumps = 0;
+        double meanWaitingTime = 1 / (jumpRate * particlesNumber);
+        double localTime = variates.nextExponential() * meanWaitingTime;
+        while (localTime <= duration) {
+            long numberOfJumping = variates.nextInteger();
+            int position = particles.get(numberOfJumping);
+            attempts++;
+            boolean jump = true;
+            if (numberOfJumping > 0) {
+                int gap = particles.get(numberOfJumping - 1) - position - 1;
+                double stay = gap < qPowers.length ? qPowers[gap] : Math.pow(leftRate, gap);
+                jump = variates.nextUniform() > stay;
+            }
+            if (jump) {
+                particles.set(numberOfJumping, position + 1);
+                jumps++;
+                if (jumpEvents != null) {
+                    jumpEvents.publish(numberOfJumping, position, position + 1, modelTime + localTime);
+                }
+            }
+            localTime += variates.nextExponential() * meanWaitingTime;
+        }
+        this.attempts = attempts;
+        this.jumps = jumps;
     }
 
     @Override
@@ -154,17 +610,60 @@ public class TASEPModel extends Model {
 
     @Override
     public void paint(GraphicsContext graphicsContext) {
-        double canvasWidth = graphicsContext.getCanvas().getWidth(),
-                canvasHeight = graphicsContext.getCanvas().getHeight();
+        PaintEvent event = new PaintEvent();
+        event.begin();
+        if (renderer != Renderer.CANVAS) {
+            if (pixelRenderer == null) {
+                pixelRenderer = new TASEPPixelRenderer();
+            }
+            double lowest = pixelRenderer.paint(this, graphicsContext, renderer == Renderer.BACKGROUND_PIXELS);
+            if (lowest <= getTopMargin(graphicsContext)) {
+                canBeStopped = true;
+            }
+        } else {
+            double canvasWidth = graphicsContext.getCanvas().getWidth(),
+                    canvasHeight = graphicsContext.getCanvas().getHeight();
 
-        graphicsContext.clearRect(0, 0, canvasWidth, canvasHeight);
-        graphicsContext.setStroke(Color.BLACK);
-        graphicsContext.setLineWidth(AXIS_LINE_WIDTH);
-        graphicsContext.strokeLine(0, canvasHeight - particleSize - BOTTOM_MARGIN_HEIGHTS,
-                canvasWidth, canvasHeight - particleSize - BOTTOM_MARGIN_HEIGHTS);
+            graphicsContext.clearRect(0, 0, canvasWidth, canvasHeight);
+            graphicsContext.setStroke(Color.BLACK);
+            graphicsContext.setLineWidth(AXIS_LINE_WIDTH);
+            graphicsContext.strokeLine(0, canvasHeight - particleSize - BOTTOM_MARGIN_HEIGHTS,
+                    canvasWidth, canvasHeight - particleSize - BOTTOM_MARGIN_HEIGHTS);
+
+            drawTASEP(graphicsContext);
+            drawHeights(graphicsContext);
+        }
+        if (spaceTime) {
+            drawSpaceTime(graphicsContext);
+        }
+        if (event.shouldCommit()) {
+            event.particles = particles.size();
+            event.renderer = renderer.name();
+            event.commit();
+        }
+    }
+
+    /**
+     * Returns the height of the region at the top of the canvas which is covered by the space-time diagram.
+     */
+    private double getTopMargin(GraphicsContext graphicsContext) {
+        return spaceTime ? (int) (graphicsContext.getCanvas().getHeight() * SPACE_TIME_HEIGHT_RATIO) : 0;
+    }
 
-        drawTASEP(graphicsContext);
-        drawHeights(graphicsContext);
+    /**
+     * Appends the current configuration to the space-time diagram and draws it at the top of the canvas.
+     */
+    private void drawSpaceTime(GraphicsContext graphicsContext) {
+        int width = (int) graphicsContext.getCanvas().getWidth(),
+                height = (int) getTopMargin(graphicsContext);
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+        if (spaceTimeView == null || spaceTimeView.getWidth() != width || spaceTimeView.getHeight() != height) {
+            spaceTimeView = new SpaceTimeView(width, height);
+        }
+        spaceTimeView.append(this);
+        spaceTimeView.draw(graphicsContext, 0, 0);
     }
 
     /**
@@ -172,7 +671,8 @@ public class TASEPModel extends Model {
      */
     private void drawTASEP(GraphicsContext graphicsContext) {
         graphicsContext.setFill(Color.BLUE);
-        for (int particle : particles) {
+        for (long k = 0; k < particles.size(); k++) {
+            int particle = particles.get(k);
             graphicsContext.fillOval((int) (graphicsContext.getCanvas().getWidth() / 2 + particleSize * particle - particleSize / 2),
                     graphicsContext.getCanvas().getHeight() - particleSize - BOTTOM_MARGIN_TASEP,
                     particleSize, particleSize);
@@ -345,13 +845,13 @@ public class TASEPModel extends Model {
         graphicsContext.setStroke(Color.BLUE);
         graphicsContext.setLineWidth(STANDARD_LINE_WIDTH);
         double minHeight = 0;
-        for (int particleNumber = 0; particleNumber < particles.length; particleNumber++) {
+        for (long particleNumber = 0; particleNumber < particles.size(); particleNumber++) {
             double height = drawCorner(graphicsContext, particleNumber);
             if (height > minHeight) {
                 minHeight = height;
             }
         }
-        if (minHeight <= 0) {
+        if (minHeight <= getTopMargin(graphicsContext)) {
             canBeStopped = true;
         }
     }
@@ -362,22 +862,24 @@ public class TASEPModel extends Model {
      * @param particleNumber the number of the particle whose corner will be drawn.
      * @return the height of the corner
      */
-    private double drawCorner(GraphicsContext graphicsContext, int particleNumber) {
+    private double drawCorner(GraphicsContext graphicsContext, long particleNumber) {
         double width = graphicsContext.getCanvas().getWidth(),
                 height = graphicsContext.getCanvas().getHeight();
         // We need this condition to make the central particle be at height 0.
-        double centering = (initialData == InitialData.FLAT) ? particles.length : 0;
-        double horizontalShift = width / 2 + particleSize * (particles[particleNumber] - 1),
+        double centering = (initialData == InitialData.FLAT) ? particles.size() : 0;
+        int position = particles.get(particleNumber);
+        double horizontalShift = width / 2 + particleSize * (position - 1),
                 verticalShift = height - BOTTOM_MARGIN_HEIGHTS
-                        - particleSize * (particles[particleNumber] + 2 * particleNumber - centering + 1);
+                        - particleSize * (position + 2 * particleNumber - centering + 1);
 
         graphicsContext.strokeLine(horizontalShift, verticalShift - particleSize,
                 horizontalShift + particleSize, verticalShift);
         if (particleNumber > 0) {
+            int previousPosition = particles.get(particleNumber - 1);
             graphicsContext.strokeLine(horizontalShift + particleSize, verticalShift,
-                    width / 2 + particleSize * (particles[particleNumber - 1] - 1),
+                    width / 2 + particleSize * (previousPosition - 1),
                     height - BOTTOM_MARGIN_HEIGHTS
-                            - particleSize * (particles[particleNumber - 1] + 2 * (particleNumber - 1) - centering + 2));
+                            - particleSize * (previousPosition + 2 * (particleNumber - 1) - centering + 2));
         }
 
         return verticalShift;
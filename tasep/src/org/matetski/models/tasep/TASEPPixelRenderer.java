@@ -0,0 +1,115 @@
+package org.matetski.models.tasep;
+
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import org.matetski.utils.PixelBuffer;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Draws the model by rasterizing it into a {@link PixelBuffer} and uploading the pixels to the canvas at once.
+ * The rasterization can run on a background thread, in which case the canvas shows the previous frame
+ * while the next one is prepared.
+ *
+ * @author K.Matetski
+ */
+final class TASEPPixelRenderer {
+
+    private final TASEPFrame frame = new TASEPFrame();
+
+    /**
+     * The buffer shown on the canvas and the buffer into which the next frame is rasterized.
+     */
+    private PixelBuffer front, back;
+
+    private WritableImage image;
+
+    /**
+     * The lowest point of the interface in the front buffer.
+     */
+    private double lowest;
+
+    private double backLowest;
+
+    /**
+     * Is true while the back buffer is being rasterized on the background thread.
+     */
+    private volatile boolean rendering = false;
+
+    /**
+     * Is true if the back buffer contains a frame which has not been shown yet.
+     */
+    private boolean backReady = false;
+
+    private ExecutorService executor;
+
+    private final Runnable renderTask = () -> {
+        backLowest = frame.render(back);
+        backReady = true;
+        rendering = false;
+    };
+
+    /**
+     * Draws the model on the canvas, should be called on the JavaFX thread.
+     *
+     * @param background if {@code true}, the rasterization is done on a background thread.
+     * @return the vertical coordinate of the lowest visible point of the interface on the canvas.
+     */
+    double paint(TASEPModel model, GraphicsContext graphicsContext, boolean background) {
+        int width = (int) graphicsContext.getCanvas().getWidth(),
+                height = (int) graphicsContext.getCanvas().getHeight();
+        if (rendering) {
+            upload(graphicsContext);
+            return lowest;
+        }
+        if (front == null || front.getWidth() != width || front.getHeight() != height) {
+            front = new PixelBuffer(width, height);
+            back = new PixelBuffer(width, height);
+            image = new WritableImage(width, height);
+            front.fill(PixelBuffer.WHITE);
+            lowest = height;
+            backReady = false;
+        } else if (backReady) {
+            swapBuffers();
+        }
+        frame.capture(model, width, height);
+        if (background) {
+            rendering = true;
+            getExecutor().execute(renderTask);
+        } else {
+            lowest = frame.render(front);
+        }
+        upload(graphicsContext);
+        return lowest;
+    }
+
+    /**
+     * Makes the last rasterized frame visible.
+     */
+    private void swapBuffers() {
+        PixelBuffer buffer = front;
+        front = back;
+        back = buffer;
+        lowest = backLowest;
+        backReady = false;
+    }
+
+    private void upload(GraphicsContext graphicsContext) {
+        image.getPixelWriter().setPixels(0, 0, front.getWidth(), front.getHeight(),
+                PixelFormat.getIntArgbPreInstance(), front.getPixels(), 0, front.getWidth());
+        graphicsContext.drawImage(image, 0, 0);
+    }
+
+    private ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "TASEP renderer");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return executor;
+    }
+}
@@ -0,0 +1,500 @@
+package org.matetski.models.tasep;
+
+import org.matetski.utils.ModelUtils;
+
+import java.awt.*;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.matetski.models.tasep.TASEPUtils.*;
+
+/**
+ * A WebSocket server which streams the evolution of the model to browsers. The server listens only on the loopback
+ * interface and sends binary messages in the network byte order:
+ * <ul>
+ * <li>a keyframe: the byte {@code 0}, the model time as a double, the number {@code n} of particles as an int
+ * and the positions of the {@code n} right most particles as ints;</li>
+ * <li>a delta: the byte {@code 1}, the model time as a double, the number {@code m} of moved particles as an int
+ * and {@code m} pairs of ints, the number of a particle and its new position.</li>
+ * </ul>
+ * Every client starts with a keyframe. Each client has a short queue of frames; if it is full, the frame is dropped
+ * for this client and the next frame it gets is a keyframe, so slow clients never slow down the simulation.
+ * <p>
+ * Since any web page opened in a local browser can connect to the loopback interface, the handshake is accepted
+ * only from pages served by the local host and from clients which are not browsers and send no origin.
+ * Other origins can be allowed by {@link #setAllowedOrigins(String...)}.
+ *
+ * @author K.Matetski
+ */
+public final class TASEPServer implements TASEPListener, Closeable {
+
+    private static final String WEBSOCKET_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+
+    private static final byte KEYFRAME = 0, DELTA = 1;
+
+    private static final int OPCODE_BINARY = 0x2, OPCODE_CLOSE = 0x8, OPCODE_PING = 0x9, OPCODE_PONG = 0xA;
+
+    /**
+     * The largest payload of a frame from a client which is accepted, the clients are not expected to send data.
+     */
+    private static final int MAX_CLIENT_PAYLOAD = 1 << 16;
+
+    /**
+     * The size of the socket send buffer. It is kept small, so that a slow client fills its queue
+     * and starts losing frames instead of accumulating a long backlog in the kernel.
+     */
+    private static final int SEND_BUFFER_SIZE = 1 << 16;
+
+    private final ServerSocket serverSocket;
+
+    private final int maxParticles;
+
+    private final long frameIntervalNanos;
+
+    private final CopyOnWriteArrayList<Client> clients = new CopyOnWriteArrayList<>();
+
+    /**
+     * The origins of the web pages which may connect, besides the ones served by the local host.
+     */
+    private final CopyOnWriteArrayList<String> allowedOrigins = new CopyOnWriteArrayList<>();
+
+    /**
+     * The positions of the particles in the last frame, accessed only by the simulation thread.
+     */
+    private int[] positions = new int[0];
+
+    /**
+     * The numbers and positions of the particles moved since the last frame.
+     */
+    private int[] movedParticles = new int[0], movedPositions = new int[0];
+
+    private long lastFrameNanos;
+
+    private volatile boolean closed = false;
+
+    /**
+     * Starts the server on the given port of the loopback interface.
+     *
+     * @param port         the port, or {@code 0} for any free port.
+     * @param maxParticles the largest number of right most particles which are streamed.
+     */
+    public TASEPServer(int port, int maxParticles) throws IOException {
+        this.maxParticles = maxParticles;
+        frameIntervalNanos = 1_000_000_000L / SERVER_FRAMES_PER_SECOND;
+        serverSocket = new ServerSocket(port, 0, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(this::accept, "TASEP server");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Sets the origins of the web pages which may connect besides the ones served by the local host,
+     * e.g. {@code null} for the pages opened from files.
+     */
+    public void setAllowedOrigins(String... origins) {
+        allowedOrigins.clear();
+        allowedOrigins.addAll(Arrays.asList(origins));
+    }
+
+    @Override
+    public void initialized(TASEPModel model) {
+        // The number of particles may change, the clients get a keyframe with the new configuration.
+        lastFrameNanos = 0;
+        updated(model);
+    }
+
+    @Override
+    public void updated(TASEPModel model) {
+        if (clients.isEmpty()) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (lastFrameNanos != 0 && now - lastFrameNanos < frameIntervalNanos) {
+            return;
+        }
+        lastFrameNanos = now;
+
+        ParticleStorage particles = model.getParticles();
+        int count = (int) Math.min(particles.size(), maxParticles);
+        boolean resized = count != positions.length;
+        if (resized) {
+            positions = new int[count];
+            movedParticles = new int[count];
+            movedPositions = new int[count];
+        }
+        int movedNumber = 0;
+        for (int k = 0; k < count; k++) {
+            int position = particles.get(k);
+            if (position != positions[k]) {
+                movedParticles[movedNumber] = k;
+                movedPositions[movedNumber++] = position;
+                positions[k] = position;
+            }
+        }
+
+        // The frames are encoded once and shared between the clients.
+        byte[] keyframe = null, delta = null;
+        for (Client client : clients) {
+            byte[] frame;
+            if (resized || client.needsKeyframe) {
+                if (keyframe == null) {
+                    keyframe = encodeKeyframe(model.getModelTime(), count);
+                }
+                frame = keyframe;
+            } else {
+                if (delta == null) {
+                    delta = encodeDelta(model.getModelTime(), movedNumber);
+                }
+                frame = delta;
+            }
+            client.needsKeyframe = !client.frames.offer(frame);
+        }
+    }
+
+    private byte[] encodeKeyframe(double time, int count) {
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 8 + 4 + 4 * count);
+        buffer.put(KEYFRAME).putDouble(time).putInt(count);
+        for (int k = 0; k < count; k++) {
+            buffer.putInt(positions[k]);
+        }
+        return buffer.array();
+    }
+
+    private byte[] encodeDelta(double time, int movedNumber) {
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 8 + 4 + 8 * movedNumber);
+        buffer.put(DELTA).putDouble(time).putInt(movedNumber);
+        for (int k = 0; k < movedNumber; k++) {
+            buffer.putInt(movedParticles[k]).putInt(movedPositions[k]);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Stops accepting connections and disconnects the clients.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        serverSocket.close();
+        for (Client client : clients) {
+            client.close();
+        }
+    }
+
+    private void accept() {
+        long backoffMillis = SERVER_ACCEPT_BACKOFF_MILLIS;
+        while (!closed && !serverSocket.isClosed()) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                if (closed || serverSocket.isClosed()) {
+                    return;
+                }
+                // A persistent failure, e.g. too many open files, would make a busy loop, it is reported once.
+                if (backoffMillis == SERVER_ACCEPT_BACKOFF_MILLIS) {
+                    System.err.println("TASEP server: " + e.getMessage() + ", retrying");
+                }
+                try {
+                    Thread.sleep(backoffMillis);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+                backoffMillis = Math.min(2 * backoffMillis, SERVER_MAX_ACCEPT_BACKOFF_MILLIS);
+                continue;
+            }
+            backoffMillis = SERVER_ACCEPT_BACKOFF_MILLIS;
+            try {
+                socket.setTcpNoDelay(true);
+                socket.setSendBufferSize(SEND_BUFFER_SIZE);
+                Thread reader = new Thread(() -> new Client(socket).read(), "TASEP server client reader");
+                reader.setDaemon(true);
+                reader.start();
+            } catch (IOException e) {
+                try {
+                    socket.close();
+                } catch (IOException ignored) {
+                    // The socket is closed anyway.
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks whether a web page with the given origin may connect.
+     */
+    private boolean isAllowedOrigin(String origin) {
+        if (allowedOrigins.contains(origin)) {
+            return true;
+        }
+        try {
+            URI uri = new URI(origin);
+            String host = uri.getHost();
+            return ("http".equals(uri.getScheme()) || "https".equals(uri.getScheme())) && host != null
+                    && (host.equals("localhost") || host.equals("127.0.0.1") || host.equals("[::1]"));
+        } catch (URISyntaxException e) {
+            return false;
+        }
+    }
+
+    /**
+     * A connected browser. The reader thread performs the handshake and answers the control frames,
+     * the writer thread sends the queued frames.
+     */
+    private final class Client {
+
+        private final Socket socket;
+
+        private final BlockingQueue<byte[]> frames = new ArrayBlockingQueue<>(SERVER_QUEUE_FRAMES);
+
+        /**
+         * Is true if the client missed a frame, accessed only by the simulation thread.
+         */
+        private boolean needsKeyframe = true;
+
+        private OutputStream output;
+
+        Client(Socket socket) {
+            this.socket = socket;
+        }
+
+        void read() {
+            try {
+                DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                output = new BufferedOutputStream(socket.getOutputStream());
+                if (!handshake(input)) {
+                    return;
+                }
+                clients.add(this);
+                Thread writer = new Thread(this::write, "TASEP server client writer");
+                writer.setDaemon(true);
+                writer.start();
+
+                while (true) {
+                    int opcode = input.readUnsignedByte() & 0x0F;
+                    int lengthByte = input.readUnsignedByte();
+                    long length = lengthByte & 0x7F;
+                    if (length == 126) {
+                        length = input.readUnsignedShort();
+                    } else if (length == 127) {
+                        length = input.readLong();
+                    }
+                    if (length > MAX_CLIENT_PAYLOAD) {
+                        return;
+                    }
+                    byte[] mask = new byte[(lengthByte & 0x80) != 0 ? 4 : 0];
+                    input.readFully(mask);
+                    byte[] payload = new byte[(int) length];
+                    input.readFully(payload);
+                    for (int k = 0; k < mask.length && k < payload.length; k++) {
+                        for (int j = k; j < payload.length; j += 4) {
+                            payload[j] ^= mask[k];
+                        }
+                    }
+                    if (opcode == OPCODE_CLOSE) {
+                        send(OPCODE_CLOSE, payload);
+                        return;
+                    } else if (opcode == OPCODE_PING) {
+                        send(OPCODE_PONG, payload);
+                    }
+                }
+            } catch (IOException e) {
+                // The client disconnected.
+            } finally {
+                close();
+            }
+        }
+
+        /**
+         * Reads the HTTP upgrade request and answers it.
+         *
+         * @return {@code false} if the request is not a WebSocket handshake from an allowed origin.
+         */
+        private boolean handshake(DataInputStream input) throws IOException {
+            String[] requestLine = readLine(input).split(" ");
+            if (requestLine.length != 3 || !requestLine[0].equals("GET") || !requestLine[2].equals("HTTP/1.1")) {
+                return reject("400 Bad Request");
+            }
+            String key = null, upgrade = "", connection = "", origin = null;
+            while (true) {
+                String line = readLine(input);
+                if (line.isEmpty()) {
+                    break;
+                }
+                int colon = line.indexOf(':');
+                if (colon <= 0) {
+                    return reject("400 Bad Request");
+                }
+                String name = line.substring(0, colon).trim(), value = line.substring(colon + 1).trim();
+                if (name.equalsIgnoreCase("Sec-WebSocket-Key")) {
+                    key = value;
+                } else if (name.equalsIgnoreCase("Upgrade")) {
+                    upgrade = value;
+                } else if (name.equalsIgnoreCase("Connection")) {
+                    connection = value;
+                } else if (name.equalsIgnoreCase("Origin")) {
+                    origin = value;
+                }
+            }
+            if (key == null || !hasToken(upgrade, "websocket") || !hasToken(connection, "Upgrade")) {
+                return reject("400 Bad Request");
+            }
+            if (origin != null && !isAllowedOrigin(origin)) {
+                return reject("403 Forbidden");
+            }
+            output.write(("HTTP/1.1 101 Switching Protocols\r\nUpgrade: websocket\r\nConnection: Upgrade\r\n"
+                    + "Sec-WebSocket-Accept: " + acceptKey(key) + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            output.flush();
+            return true;
+        }
+
+        /**
+         * Reads a line of the request without the line break.
+         *
+         * @throws IOException if the line is longer than {@link TASEPUtils#SERVER_MAX_HEADER_LINE}.
+         */
+        private String readLine(DataInputStream input) throws IOException {
+            StringBuilder line = new StringBuilder();
+            int next;
+            while ((next = input.readUnsignedByte()) != '\n') {
+                if (next != '\r') {
+                    if (line.length() == SERVER_MAX_HEADER_LINE) {
+                        reject("431 Request Header Fields Too Large");
+                        throw new IOException("The request line is too long");
+                    }
+                    line.append((char) next);
+                }
+            }
+            return line.toString();
+        }
+
+        /**
+         * Checks whether a comma separated list in a header contains the given token, ignoring the case.
+         */
+        private boolean hasToken(String list, String token) {
+            for (String element : list.split(",")) {
+                if (element.trim().equalsIgnoreCase(token)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Answers a request which is not accepted.
+         *
+         * @param status the status code and the reason phrase.
+         * @return {@code false}.
+         */
+        private boolean reject(String status) throws IOException {
+            output.write(("HTTP/1.1 " + status + "\r\nContent-Length: 0\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            output.flush();
+            return false;
+        }
+
+        private void write() {
+            try {
+                while (!socket.isClosed()) {
+                    send(OPCODE_BINARY, frames.take());
+                }
+            } catch (IOException | InterruptedException e) {
+                close();
+            }
+        }
+
+        /**
+         * Sends a single unmasked frame. The reader and the writer threads may both send frames.
+         */
+        private synchronized void send(int opcode, byte[] payload) throws IOException {
+            output.write(0x80 | opcode);
+            if (payload.length < 126) {
+                output.write(payload.length);
+            } else if (payload.length < 1 << 16) {
+                output.write(126);
+                output.write(payload.length >>> 8);
+                output.write(payload.length);
+            } else {
+                output.write(127);
+                for (int shift = 56; shift >= 0; shift -= 8) {
+                    output.write((int) ((long) payload.length >>> shift));
+                }
+            }
+            output.write(payload);
+            output.flush();
+        }
+
+        void close() {
+            clients.remove(this);
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // The socket is closed anyway.
+            }
+            // Wakes up the writer thread.
+            frames.clear();
+            frames.offer(new byte[0]);
+        }
+    }
+
+    private static String acceptKey(String key) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] hash = digest.digest((key + WEBSOCKET_GUID).getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not available", e);
+        }
+    }
+
+    /**
+     * Runs the model without a window and streams it. The arguments are the port, the initial data
+     * ({@code FLAT}, {@code HALF_FLAT} or {@code STEP}), the jump rate, the width and the height of the system
+     * in pixels and the model time of the run.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 6) {
+            System.err.println("Usage: TASEPServer <port> <initial data> <jump rate> <width> <height> <model time>");
+            System.exit(1);
+        }
+        TASEPModel model = new TASEPModel();
+        HashMap<String, Object> parameters = model.getDefaultParameters();
+        parameters.put(INITIAL_DATA_PARAMETER, InitialData.valueOf(args[1]));
+        parameters.put(JUMP_RATE_PARAMETER, Double.parseDouble(args[2]));
+        parameters.put(ModelUtils.SIZE_PARAMETER, new Dimension(Integer.parseInt(args[3]),
+                Integer.parseInt(args[4])));
+        model.initialize();
+
+        try (TASEPServer server = new TASEPServer(Integer.parseInt(args[0]), SERVER_MAX_PARTICLES)) {
+            model.addListener(server);
+            model.setParameters(parameters);
+            System.out.println("Streaming on ws://localhost:" + server.getPort());
+            double modelTime = Double.parseDouble(args[5]);
+            while (model.getModelTime() < modelTime) {
+                model.update();
+            }
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package org.matetski.models.tasep;
+
+import org.matetski.utils.ModelUtils;
+import org.matetski.utils.PixelBuffer;
+
+import java.awt.*;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+
+import static org.matetski.models.tasep.TASEPUtils.*;
+
+/**
+ * A long-running check that the simulation loop does not allocate memory. The model is run without a window,
+ * and the memory allocated by the thread is measured for the updates and for the frames drawn into a pixel buffer.
+ * The program exits with a non-zero status if the updates allocate memory steadily or a frame allocates more than
+ * {@link #MAX_BYTES_PER_FRAME} on average. A few isolated allocations are tolerated, since the virtual machine
+ * may allocate while the code is being recompiled. The check catches regressions such as boxing or temporary
+ * objects. It should be run without a flight recording, since recorded events are allocated.
+ *
+ * @author K.Matetski
+ */
+public final class TASEPSoak {
+
+    /**
+     * The largest average allocation of a frame in bytes, the frame is a snapshot of the visible particles.
+     */
+    private static final long MAX_BYTES_PER_FRAME = 1 << 10;
+
+    /**
+     * The largest part of the batches of updates which may allocate memory. A regression, like boxing in the loop,
+     * allocates in every batch.
+     */
+    private static final double MAX_ALLOCATING_BATCHES = 0.01;
+
+    /**
+     * The number of updates between two frames.
+     */
+    private static final int UPDATES_PER_FRAME = 10;
+
+    /**
+     * The model time during which the code is warmed up before measuring.
+     */
+    private static final int WARM_UP_UPDATES = 10_000;
+
+    private TASEPSoak() {
+    }
+
+    /**
+     * Runs the check. The optional arguments are the duration in seconds, the initial data
+     * ({@code FLAT}, {@code HALF_FLAT} or {@code STEP}) and the width and the height of the window.
+     */
+    public static void main(String[] args) {
+        long seconds = args.length > 0 ? Long.parseLong(args[0]) : 60;
+        InitialData initialData = args.length > 1 ? InitialData.valueOf(args[1]) : DEFAULT_INITIAL_DATA;
+        int width = args.length > 2 ? Integer.parseInt(args[2]) : 1600,
+                height = args.length > 3 ? Integer.parseInt(args[3]) : 1200;
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        TASEPModel model = createModel(initialData, width, height);
+        TASEPFrame frame = new TASEPFrame();
+        PixelBuffer buffer = new PixelBuffer(width, height);
+
+        // The model is restarted when the interface leaves the window, like the application does.
+        for (int k = 0; k < WARM_UP_UPDATES; k++) {
+            if (step(model, frame, buffer, width, height, k)) {
+                model = createModel(initialData, width, height);
+            }
+        }
+
+        long updateBytes = 0, frameBytes = 0, frames = 0, allocatingBatches = 0, restarts = 0;
+        long end = System.nanoTime() + seconds * 1_000_000_000L;
+        while (System.nanoTime() < end) {
+            long before = threads.getThreadAllocatedBytes(threadId);
+            for (int k = 0; k < UPDATES_PER_FRAME; k++) {
+                model.update();
+            }
+            long middle = threads.getThreadAllocatedBytes(threadId);
+            frame.capture(model, width, height);
+            double lowest = frame.render(buffer);
+            long after = threads.getThreadAllocatedBytes(threadId);
+            updateBytes += middle - before;
+            frameBytes += after - middle;
+            if (middle != before) {
+                allocatingBatches++;
+            }
+            frames++;
+            if (lowest <= 0) {
+                model = createModel(initialData, width, height);
+                restarts++;
+            }
+        }
+
+        System.out.println("Updates: " + frames * UPDATES_PER_FRAME + ", allocated " + updateBytes + " bytes in "
+                + allocatingBatches + " of " + frames + " batches");
+        System.out.println("Frames: " + frames + ", allocated " + frameBytes / Math.max(1, frames) + " bytes per frame");
+        System.out.println("Restarts: " + restarts);
+        if (allocatingBatches > MAX_ALLOCATING_BATCHES * frames) {
+            System.err.println("The update loop allocates memory");
+            System.exit(1);
+        }
+        if (frameBytes > MAX_BYTES_PER_FRAME * frames) {
+            System.err.println("A frame allocates more than " + MAX_BYTES_PER_FRAME + " bytes");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Makes an update and, every few updates, a frame.
+     *
+     * @return {@code true} if the interface left the window.
+     */
+    private static boolean step(TASEPModel model, TASEPFrame frame, PixelBuffer buffer, int width, int height,
+                                int number) {
+        model.update();
+        if (number % UPDATES_PER_FRAME != 0) {
+            return false;
+        }
+        frame.capture(model, width, height);
+        return frame.render(buffer) <= 0;
+    }
+
+    private static TASEPModel createModel(InitialData initialData, int width, int height) {
+        TASEPModel model = new TASEPModel();
+        HashMap<String, Object> parameters = model.getDefaultParameters();
+        parameters.put(INITIAL_DATA_PARAMETER, initialData);
+        parameters.put(ModelUtils.SIZE_PARAMETER, new Dimension(width, height));
+        model.initialize();
+        model.setParameters(parameters);
+        return model;
+    }
+}
@@ -13,6 +13,13 @@ final class TASEPUtils {
     public static final String PARTICLE_SIZE_PARAMETER = "PARTICLE_SIZE";
     public static final String ANGLE_PARAMETER = "ANGLE";
     public static final String INITIAL_DATA_PARAMETER = "INITIAL_DATA";
+    public static final String STORAGE_FILE_PARAMETER = "STORAGE_FILE";
+    public static final String LIVE_STATE_FILE_PARAMETER = "LIVE_STATE_FILE";
+    public static final String SEED_PARAMETER = "SEED";
+    public static final String DYNAMICS_PARAMETER = "DYNAMICS";
+    public static final String LEFT_RATE_PARAMETER = "LEFT_RATE";
+    public static final String RENDERER_PARAMETER = "RENDERER";
+    public static final String SPACE_TIME_PARAMETER = "SPACE_TIME";
 
     /**
      * The GUI file of the control panel.
@@ -29,6 +36,21 @@ final class TASEPUtils {
      */
     public final static double DEFAULT_JUMP_RATE = 0.5;
 
+    /**
+     * The default rules of the jumps.
+     */
+    public final static Dynamics DEFAULT_DYNAMICS = Dynamics.TASEP;
+
+    /**
+     * The default value of the rate of the jumps to the left, or of the parameter q for q-TASEP.
+     */
+    public final static double DEFAULT_LEFT_RATE = 0;
+
+    /**
+     * The number of the powers of q which are precomputed for q-TASEP.
+     */
+    public final static int Q_TASEP_POWERS = 64;
+
     /**
      * The default value of a particle's diameter on the canvas.
      */
@@ -44,6 +66,99 @@ final class TASEPUtils {
      */
     public final static InitialData DEFAULT_INITIAL_DATA = InitialData.FLAT;
 
+    /**
+     * The default way the model is drawn on the canvas.
+     */
+    public final static Renderer DEFAULT_RENDERER = Renderer.CANVAS;
+
+    /**
+     * The default value showing whether the space-time diagram is drawn.
+     */
+    public final static boolean DEFAULT_SPACE_TIME = false;
+
+    /**
+     * The part of the canvas height occupied by the space-time diagram.
+     */
+    public final static double SPACE_TIME_HEIGHT_RATIO = 1.0 / 3;
+
+    /**
+     * The largest number of particles which are stored on the heap, bigger systems are stored off-heap.
+     */
+    public final static long HEAP_STORAGE_LIMIT = 1 << 26;
+
+    /**
+     * The pause in nanoseconds of a reader of the live state before it repeats a snapshot, taken during an update.
+     */
+    public final static long LIVE_STATE_RETRY_NANOS = 50_000;
+
+    /**
+     * The number of random variates generated at once for the evolution.
+     */
+    public final static int VARIATES_BLOCK_SIZE = 1 << 10;
+
+    /**
+     * The ratio of the time step of the hydrodynamic solver to the time in which a signal crosses a cell.
+     */
+    public final static double HYBRID_COURANT_NUMBER = 0.5;
+
+    /**
+     * The largest number of times a job of an ensemble is started, if its workers die.
+     */
+    public final static int ENSEMBLE_MAX_ATTEMPTS = 3;
+
+    /**
+     * The default time in milliseconds after which a worker of an ensemble running a job is considered hung.
+     */
+    public final static long ENSEMBLE_JOB_TIMEOUT_MILLIS = 60 * 60 * 1000;
+
+    /**
+     * The number of jobs of an ensemble per worker process, so that the workers finish at about the same time.
+     */
+    public final static int ENSEMBLE_JOBS_PER_WORKER = 4;
+
+    /**
+     * The number of replicas of an ensemble of TASEP which are advanced together in a worker.
+     */
+    public final static int ENSEMBLE_REPLICAS_PER_KERNEL = 256;
+
+    /**
+     * The number of exported frames which can wait for encoding, per encoding thread.
+     */
+    public final static int EXPORT_QUEUE_FRAMES_PER_ENCODER = 4;
+
+    /**
+     * The system property with the port of the local server streaming the model, the server is started if it is set.
+     */
+    public final static String SERVER_PORT_PROPERTY = "tasep.server.port";
+
+    /**
+     * The largest number of frames per second sent by the server.
+     */
+    public final static int SERVER_FRAMES_PER_SECOND = 25;
+
+    /**
+     * The number of frames which can wait for sending to a client, further frames are dropped.
+     */
+    public final static int SERVER_QUEUE_FRAMES = 4;
+
+    /**
+     * The largest number of right most particles streamed by the server.
+     */
+    public final static int SERVER_MAX_PARTICLES = 1 << 20;
+
+    /**
+     * The longest line of the HTTP request of a client of the server, longer requests are rejected.
+     */
+    public final static int SERVER_MAX_HEADER_LINE = 8192;
+
+    /**
+     * The pause in milliseconds after a failed accept of a connection by the server, doubled after each next failure
+     * up to {@link #SERVER_MAX_ACCEPT_BACKOFF_MILLIS}.
+     */
+    public final static long SERVER_ACCEPT_BACKOFF_MILLIS = 10;
+
+    public final static long SERVER_MAX_ACCEPT_BACKOFF_MILLIS = 1000;
+
     /**
      * The margin in pixels from the bottom on the canvas where the particles are drawn.
      */
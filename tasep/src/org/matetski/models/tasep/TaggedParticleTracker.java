@@ -0,0 +1,247 @@
+package org.matetski.models.tasep;
+
+import org.matetski.utils.JumpEventHandler;
+
+import java.util.Arrays;
+
+/**
+ * Follows the displacements of tagged particles, e.g. of every hundredth particle, from the model time zero.
+ * The tracker receives the jumps through {@link TASEPModel#addJumpEventHandler(JumpEventHandler)}, so the evolution
+ * of the model does not change, and every jump costs one lookup in a hash table of the tagged numbers.
+ * <p>
+ * The displacements are sampled at regular model-time intervals into a buffer of a fixed number of samples.
+ * When the buffer is full, every second sample is dropped and the interval is doubled, so that the memory
+ * stays bounded and the samples cover the whole run with a resolution proportional to its length.
+ * <p>
+ * A restart of the model, e.g. from the GUI or after it can stop, sets the model time back to zero. The tracker
+ * notices it by a jump earlier than the previous one, and starts over. The samples after the last jump of a run
+ * are taken by {@link #flush(double)}.
+ *
+ * @author K.Matetski
+ */
+public final class TaggedParticleTracker implements JumpEventHandler {
+
+    private static final long EMPTY = -1;
+
+    /**
+     * The numbers of the tagged particles in an open addressing table, with the numbers of their slots.
+     */
+    private final long[] keys;
+
+    private final int[] slots;
+
+    private final int mask;
+
+    private final long[] tagged;
+
+    /**
+     * The current displacements of the tagged particles.
+     */
+    private final long[] displacements;
+
+    /**
+     * The sampled displacements, the displacement of the tagged particle {@code slot}
+     * in the sample {@code j} is at {@code j * tagged.length + slot}.
+     */
+    private final int[] samples;
+
+    private final int capacity;
+
+    private final double initialInterval;
+
+    private int samplesNumber;
+
+    /**
+     * The model time between two samples, the sample {@code j} is taken at the time {@code j * interval}.
+     */
+    private double interval;
+
+    private double nextTime;
+
+    /**
+     * The model time of the last jump, accessed only by the thread of the handler.
+     */
+    private double lastTime;
+
+    /**
+     * Creates a tracker of the given particles.
+     *
+     * @param tagged   the numbers of the tagged particles, the 0th particle is the right most one.
+     * @param interval the initial model time between two samples.
+     * @param capacity the largest number of samples, an even number.
+     */
+    public TaggedParticleTracker(long[] tagged, double interval, int capacity) {
+        if (capacity < 2 || capacity % 2 != 0) {
+            throw new IllegalArgumentException("The capacity should be a positive even number: " + capacity);
+        }
+        this.tagged = tagged.clone();
+        this.interval = interval;
+        initialInterval = interval;
+        this.capacity = capacity;
+        int tableSize = Integer.highestOneBit(Math.max(1, 2 * tagged.length - 1)) << 1;
+        keys = new long[tableSize];
+        slots = new int[tableSize];
+        mask = tableSize - 1;
+        Arrays.fill(keys, EMPTY);
+        for (int slot = 0; slot < tagged.length; slot++) {
+            int k = index(tagged[slot]);
+            while (keys[k] != EMPTY && keys[k] != tagged[slot]) {
+                k = (k + 1) & mask;
+            }
+            if (keys[k] == tagged[slot]) {
+                throw new IllegalArgumentException("The particle is tagged twice: " + tagged[slot]);
+            }
+            keys[k] = tagged[slot];
+            slots[k] = slot;
+        }
+        displacements = new long[tagged.length];
+        samples = new int[capacity * tagged.length];
+    }
+
+    /**
+     * Returns the position in the table where the search for the given number starts.
+     */
+    private int index(long particle) {
+        long hash = particle * 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> 32) & mask;
+    }
+
+    @Override
+    public void onJump(long particle, long from, long to, double time, boolean endOfBatch) {
+        if (time < lastTime) {
+            reset();
+        }
+        lastTime = time;
+        // The displacements are constant between the jumps, so the samples are taken before the jump.
+        while (time >= nextTime) {
+            sample();
+        }
+        int k = index(particle);
+        while (keys[k] != EMPTY) {
+            if (keys[k] == particle) {
+                displacements[slots[k]] += to - from;
+                return;
+            }
+            k = (k + 1) & mask;
+        }
+    }
+
+    /**
+     * Takes the samples up to the given model time, e.g. at the end of a run. Should be called after the tracker
+     * received all jumps up to this time, e.g. after {@link TASEPModel#closeJumpEventHandlers()}.
+     *
+     * @param time the model time at the end of the run.
+     */
+    public synchronized void flush(double time) {
+        while (time >= nextTime) {
+            sample();
+        }
+    }
+
+    /**
+     * Forgets the displacements and the samples, when the model starts over.
+     */
+    private synchronized void reset() {
+        Arrays.fill(displacements, 0);
+        samplesNumber = 0;
+        interval = initialInterval;
+        nextTime = 0;
+    }
+
+    private synchronized void sample() {
+        if (samplesNumber == capacity) {
+            for (int j = 1; j < capacity / 2; j++) {
+                System.arraycopy(samples, 2 * j * tagged.length, samples, j * tagged.length, tagged.length);
+            }
+            samplesNumber = capacity / 2;
+            interval *= 2;
+        }
+        int offset = samplesNumber * tagged.length;
+        for (int slot = 0; slot < tagged.length; slot++) {
+            samples[offset + slot] = (int) displacements[slot];
+        }
+        samplesNumber++;
+        nextTime = samplesNumber * interval;
+    }
+
+    public int getTaggedNumber() {
+        return tagged.length;
+    }
+
+    public long getTagged(int slot) {
+        return tagged[slot];
+    }
+
+    public synchronized int getSamplesNumber() {
+        return samplesNumber;
+    }
+
+    /**
+     * Returns the model time of the sample with the given number.
+     */
+    public synchronized double getTime(int sample) {
+        return sample * interval;
+    }
+
+    /**
+     * Returns the displacement of a tagged particle in the sample with the given number.
+     *
+     * @param slot   the number of the particle in the array of the tagged particles.
+     * @param sample the number of the sample.
+     * @return the displacement since the time zero.
+     */
+    public synchronized int getDisplacement(int slot, int sample) {
+        return samples[sample * tagged.length + slot];
+    }
+
+    /**
+     * Returns the displacement averaged over the tagged particles in the sample with the given number.
+     */
+    public synchronized double getMeanDisplacement(int sample) {
+        double sum = 0;
+        int offset = sample * tagged.length;
+        for (int slot = 0; slot < tagged.length; slot++) {
+            sum += samples[offset + slot];
+        }
+        return sum / tagged.length;
+    }
+
+    /**
+     * Returns the variance of the displacement over the tagged particles in the sample with the given number.
+     */
+    public synchronized double getVariance(int sample) {
+        double mean = getMeanDisplacement(sample), sum = 0;
+        int offset = sample * tagged.length;
+        for (int slot = 0; slot < tagged.length; slot++) {
+            double deviation = samples[offset + slot] - mean;
+            sum += deviation * deviation;
+        }
+        return sum / (tagged.length - 1);
+    }
+
+    /**
+     * Estimates the exponent {@code a} in {@code Var(X(t)) ~ t^a} of the displacement {@code X(t)},
+     * by the least squares fit of the logarithms of the samples in the given range. For TASEP the exponent
+     * is {@code 2/3} in the KPZ regime.
+     *
+     * @param fromSample the first sample, positive.
+     * @param toSample   the sample after the last one.
+     * @return the estimated exponent.
+     */
+    public synchronized double getScalingExponent(int fromSample, int toSample) {
+        double sumX = 0, sumY = 0, sumXX = 0, sumXY = 0;
+        int n = 0;
+        for (int sample = Math.max(1, fromSample); sample < toSample; sample++) {
+            double variance = getVariance(sample);
+            if (variance > 0) {
+                double x = Math.log(getTime(sample)), y = Math.log(variance);
+                sumX += x;
+                sumY += y;
+                sumXX += x * x;
+                sumXY += x * y;
+                n++;
+            }
+        }
+        return (n * sumXY - sumX * sumY) / (n * sumXX - sumX * sumX);
+    }
+}